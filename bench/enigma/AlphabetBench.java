@@ -0,0 +1,55 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks for Alphabet.toInt.
+ *  @author Manu John
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AlphabetBench {
+
+    /** Number of characters looked up per invocation. */
+    static final int OPS = 1 << 10;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Create the alphabet and the characters to look up. */
+    @Setup
+    public void setUp() {
+        String alpha = BenchMachines.alphabet(size);
+        _alphabet = new Alphabet(alpha);
+        _chars = BenchMachines.message(alpha, OPS);
+    }
+
+    /** Return the sum of the indices of the characters. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int toInt() {
+        int sum = 0;
+        for (char c : _chars) {
+            sum += _alphabet.toInt(c);
+        }
+        return sum;
+    }
+
+    /** The alphabet under test. */
+    private Alphabet _alphabet;
+
+    /** Characters to look up. */
+    private char[] _chars;
+
+}
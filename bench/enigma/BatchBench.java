@@ -0,0 +1,96 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks for converting many short messages, each with its own
+ *  settings line, with a BatchEngine and one Machine at a time.
+ *  @author Manu John
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchBench {
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64" })
+    public int size;
+
+    /** Number of messages. */
+    @Param({ "4096" })
+    public int count;
+
+    /** Length of each message. */
+    @Param({ "40", "400" })
+    public int length;
+
+    /** Create the machine, settings lines, and messages. */
+    @Setup
+    public void setUp() {
+        Random random = BenchMachines.random();
+        String alpha = BenchMachines.alphabet(size);
+        _machine = BenchMachines.machine(size, ROTORS);
+        _settings = new ArrayList<>();
+        _messages = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) {
+            StringBuilder line = new StringBuilder("* R F");
+            for (int k = 1; k <= ROTORS - 2; k += 1) {
+                line.append(" M").append(k);
+            }
+            line.append(' ');
+            for (int k = 1; k < ROTORS; k += 1) {
+                line.append(alpha.charAt(random.nextInt(size)));
+            }
+            _settings.add(line.toString());
+            char[] message = new char[length];
+            for (int j = 0; j < length; j += 1) {
+                message[j] = alpha.charAt(random.nextInt(size));
+            }
+            _messages.add(new String(message));
+        }
+    }
+
+    /** Convert all the messages with a BatchEngine. */
+    @Benchmark
+    public List<String> batch() {
+        return new BatchEngine(_machine, new SettingsCache(count))
+            .convert(_settings, _messages);
+    }
+
+    /** Convert all the messages one at a time, each with a Machine set up
+     *  from its settings line. */
+    @Benchmark
+    public List<String> oneAtATime() {
+        List<String> result = new ArrayList<>(count);
+        Machine m = _machine.copy();
+        for (int i = 0; i < count; i += 1) {
+            Main.configure(m, _settings.get(i));
+            result.add(m.convert(_messages.get(i)));
+        }
+        return result;
+    }
+
+    /** Number of rotor slots. */
+    private static final int ROTORS = 5;
+
+    /** The machine whose rotors are used. */
+    private Machine _machine;
+
+    /** Settings line of each message. */
+    private List<String> _settings;
+
+    /** The messages. */
+    private List<String> _messages;
+
+}
@@ -0,0 +1,126 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Randomly generated alphabets, configurations, machines, and messages
+ *  for the benchmarks.  All are derived from a fixed seed, so that the
+ *  results of separate runs are comparable.
+ *  @author Manu John
+ */
+final class BenchMachines {
+
+    /** Seed for all random choices. */
+    static final long SEED = 61;
+
+    /** Not instantiable. */
+    private BenchMachines() {
+    }
+
+    /** Return a new source of random choices. */
+    static Random random() {
+        return new Random(SEED);
+    }
+
+    /** Return the first SIZE letters at or above 'A', which are safe to
+     *  use in configuration files. */
+    static String alphabet(int size) {
+        StringBuilder result = new StringBuilder();
+        for (char c = 'A'; result.length() < size; c += 1) {
+            if (Character.isLetter(c)) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return a random permutation of the characters of ALPHA in cycle
+     *  notation, using RANDOM.  If PAIRS, it is made of 2-cycles only,
+     *  and is a derangement when ALPHA has even length. */
+    static String cycles(String alpha, Random random, boolean pairs) {
+        List<Character> chars = new ArrayList<>();
+        for (char c : alpha.toCharArray()) {
+            chars.add(c);
+        }
+        Collections.shuffle(chars, random);
+        StringBuilder result = new StringBuilder("(");
+        for (int i = 0; i < chars.size(); i += 1) {
+            if (i > 0 && (pairs ? i % 2 == 0 : random.nextInt(8) == 0)) {
+                result.append(")(");
+            }
+            result.append(chars.get(i));
+        }
+        if (pairs && chars.size() % 2 == 1) {
+            result.setLength(result.length() - 1);
+        }
+        return result.append(")").toString();
+    }
+
+    /** Return the text of a configuration file for a machine with an
+     *  alphabet of SIZE letters and ROTORS rotors: a reflector R, a
+     *  fixed rotor F, and moving rotors M1, M2, ... with one notch
+     *  each. */
+    static String config(int size, int rotors) {
+        Random random = random();
+        String alpha = alphabet(size);
+        StringBuilder result = new StringBuilder();
+        result.append(alpha).append("\n")
+            .append(rotors).append(" ").append(rotors - 2).append("\n")
+            .append("R R ").append(cycles(alpha, random, true)).append("\n")
+            .append("F N ").append(cycles(alpha, random, false))
+            .append("\n");
+        for (int k = 1; k <= rotors - 2; k += 1) {
+            result.append("M").append(k).append(" M")
+                .append(alpha.charAt(random.nextInt(size))).append(" ")
+                .append(cycles(alpha, random, false)).append("\n");
+        }
+        return result.toString();
+    }
+
+    /** Return a machine read from config(SIZE, ROTORS), with all its
+     *  rotors inserted in order, at random settings, and with a random
+     *  plugboard. */
+    static Machine machine(int size, int rotors) {
+        Random random = random();
+        String alpha = alphabet(size);
+        Machine result = new ConfigParser(config(size, rotors)).parse();
+        String[] names = new String[rotors];
+        names[0] = "R";
+        names[1] = "F";
+        for (int k = 2; k < rotors; k += 1) {
+            names[k] = "M" + (k - 1);
+        }
+        result.insertRotors(names);
+        StringBuilder setting = new StringBuilder();
+        for (int k = 1; k < rotors; k += 1) {
+            setting.append(alpha.charAt(random.nextInt(size)));
+        }
+        result.setRotors(setting.toString());
+        result.setPlugboard(new Permutation(cycles(alpha, random, true),
+                                            result.alphabet()));
+        return result;
+    }
+
+    /** Return LENGTH random characters of ALPHA. */
+    static char[] message(String alpha, int length) {
+        Random random = random();
+        char[] result = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = alpha.charAt(random.nextInt(alpha.length()));
+        }
+        return result;
+    }
+
+    /** Return LENGTH random integers in the range 0 .. SIZE-1. */
+    static int[] indices(int size, int length) {
+        Random random = random();
+        int[] result = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = random.nextInt(size);
+        }
+        return result;
+    }
+
+}
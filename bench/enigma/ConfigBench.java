@@ -0,0 +1,59 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks for reading machine configurations and images.
+ *  @author Manu John
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigBench {
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Number of rotors. */
+    @Param({ "3", "5", "8" })
+    public int rotors;
+
+    /** Create the text of the configuration and its image. */
+    @Setup
+    public void setUp() {
+        _config = BenchMachines.config(size, rotors);
+        ConfigParser parser = new ConfigParser(_config);
+        parser.parse();
+        _image = MachineImage.write(parser.alphabet(), parser.numRotors(),
+                                    parser.numPawls(), parser.rotors());
+    }
+
+    /** Return the machine described by the configuration. */
+    @Benchmark
+    public Machine parse() {
+        return new ConfigParser(_config).parse();
+    }
+
+    /** Return the machine in the image. */
+    @Benchmark
+    public Machine readImage() {
+        return MachineImage.read(_image);
+    }
+
+    /** Text of the configuration file. */
+    private String _config;
+
+    /** Image of the configuration. */
+    private ByteBuffer _image;
+
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks for Machine.convert on short and long messages.
+ *  @author Manu John
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MachineBench {
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Number of rotors. */
+    @Param({ "3", "5", "8" })
+    public int rotors;
+
+    /** Length of each message. */
+    @Param({ "40", "1048576" })
+    public int length;
+
+    /** Create the machine and a message for it. */
+    @Setup
+    public void setUp() {
+        _machine = BenchMachines.machine(size, rotors);
+        _message = BenchMachines.message(BenchMachines.alphabet(size),
+                                         length);
+        _converted = new char[length];
+    }
+
+    /** Convert the message, returning the number of characters
+     *  converted.  The machine is not reset, so successive invocations
+     *  convert at different settings. */
+    @Benchmark
+    public int convert() {
+        return _machine.convert(_message, 0, length, _converted, 0);
+    }
+
+    /** Convert the message as a string. */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(new String(_message));
+    }
+
+    /** The machine under test. */
+    private Machine _machine;
+
+    /** Message to convert. */
+    private char[] _message;
+
+    /** Space for the converted message. */
+    private char[] _converted;
+
+}
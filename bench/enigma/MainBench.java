@@ -0,0 +1,82 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** End-to-end benchmarks of Main on the inputs in testing/correct,
+ *  each repeated to make it larger.  The testing directory is
+ *  ../testing unless given by the system property enigma.testing.
+ *  @author Manu John
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MainBench {
+
+    /** Name of the input file, without its .in suffix.  As in
+     *  testing/test-correct, its configuration is in the .conf file of
+     *  the same name, if there is one, and otherwise in default.conf. */
+    @Param({ "01-carroll", "02-rotorVIII", "03-carroll", "05-step" })
+    public String input;
+
+    /** Number of copies of the input to process. */
+    @Param({ "1", "100" })
+    public int scale;
+
+    /** Read the configuration and the input, and make SCALE copies of
+     *  the latter, each ending in a newline. */
+    @Setup
+    public void setUp() throws IOException {
+        Path dir = Paths.get(System.getProperty("enigma.testing",
+                                                "../testing"), "correct");
+        Path conf = dir.resolve(input + ".conf");
+        if (!Files.exists(conf)) {
+            conf = dir.resolve("default.conf");
+        }
+        _config = new String(Files.readAllBytes(conf),
+                             Charset.defaultCharset());
+        byte[] messages = Files.readAllBytes(dir.resolve(input + ".in"));
+        ByteArrayOutputStream copies = new ByteArrayOutputStream();
+        for (int k = 0; k < scale; k += 1) {
+            copies.write(messages);
+            copies.write('\n');
+        }
+        _messages = copies.toByteArray();
+    }
+
+    /** Process the input, discarding the output. */
+    @Benchmark
+    public void process() {
+        LineReader input =
+            new LineReader(Channels.newChannel(
+                               new ByteArrayInputStream(_messages)),
+                           Charset.defaultCharset());
+        new Main(new ConfigParser(_config), input,
+                 new PrintWriter(Writer.nullWriter())).process();
+    }
+
+    /** Text of the configuration file. */
+    private String _config;
+
+    /** Contents of the scaled-up input file. */
+    private byte[] _messages;
+
+}
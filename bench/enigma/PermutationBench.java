@@ -0,0 +1,69 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks for Permutation.permute and Permutation.invert.
+ *  @author Manu John
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PermutationBench {
+
+    /** Number of values mapped per invocation. */
+    static final int OPS = 1 << 10;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Create the permutation and its inputs. */
+    @Setup
+    public void setUp() {
+        String alpha = BenchMachines.alphabet(size);
+        _perm = new Permutation(BenchMachines.cycles(alpha,
+                                                     BenchMachines.random(),
+                                                     false),
+                                new Alphabet(alpha));
+        _inputs = BenchMachines.indices(size, OPS);
+    }
+
+    /** Return the sum of the images of the inputs. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int permute() {
+        int sum = 0;
+        for (int p : _inputs) {
+            sum += _perm.permute(p);
+        }
+        return sum;
+    }
+
+    /** Return the sum of the inverse images of the inputs. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int invert() {
+        int sum = 0;
+        for (int c : _inputs) {
+            sum += _perm.invert(c);
+        }
+        return sum;
+    }
+
+    /** The permutation under test. */
+    private Permutation _perm;
+
+    /** Values to map. */
+    private int[] _inputs;
+
+}
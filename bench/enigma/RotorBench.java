@@ -0,0 +1,75 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks for PositionedRotor.convertForward and convertBackward.
+ *  @author Manu John
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RotorBench {
+
+    /** Number of values converted per invocation. */
+    static final int OPS = 1 << 10;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Create a moving rotor, away from its 0 setting, and its
+     *  inputs. */
+    @Setup
+    public void setUp() {
+        String alpha = BenchMachines.alphabet(size);
+        Permutation perm =
+            new Permutation(BenchMachines.cycles(alpha,
+                                                 BenchMachines.random(),
+                                                 false),
+                            new Alphabet(alpha));
+        _rotor = new PositionedRotor(
+            new MovingRotor("M", perm, alpha.substring(0, 1)));
+        _rotor.set(size / 3);
+        _rotor.setRinger(alpha.charAt(size / 5));
+        _inputs = BenchMachines.indices(size, OPS);
+    }
+
+    /** Return the sum of the forward conversions of the inputs. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int convertForward() {
+        int sum = 0;
+        for (int p : _inputs) {
+            sum += _rotor.convertForward(p);
+        }
+        return sum;
+    }
+
+    /** Return the sum of the backward conversions of the inputs. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int convertBackward() {
+        int sum = 0;
+        for (int e : _inputs) {
+            sum += _rotor.convertBackward(e);
+        }
+        return sum;
+    }
+
+    /** The rotor under test. */
+    private PositionedRotor _rotor;
+
+    /** Values to convert. */
+    private int[] _inputs;
+
+}
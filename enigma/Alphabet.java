@@ -1,25 +1,62 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  A character is a Unicode code
+ *  point, which may lie outside the Basic Multilingual Plane and so take
+ *  two chars (a surrogate pair) in a String.  Building an alphabet takes
+ *  time linear in its size, and looking a character up takes constant
+ *  time.
  *  @author Manu John
  */
 class Alphabet {
 
-    /** A new alphabet containing CHARS. The K-th character has index
-     *  K (numbering from 0). No character may be duplicated. */
+    /** A new alphabet containing the code points of CHARS. The K-th
+     *  code point has index K (numbering from 0). No code point may be
+     *  duplicated, and CHARS may not contain unpaired surrogates. */
     Alphabet(String chars) {
-        if (chars.contains("*") || chars.contains("(") || chars.contains(")")) {
-            throw new EnigmaException("cannot contain *, (, )");
+        this(checked(chars), false);
+    }
+
+    /** A new alphabet containing CHARS, which is the alphabet of all
+     *  byte values iff BYTES. */
+    private Alphabet(String chars, boolean bytes) {
+        this.seq = chars;
+        _bytes = bytes;
+        _codePoints = chars.codePoints().toArray();
+        _bmp = _codePoints.length == chars.length();
+
+        int lo = Character.MAX_CODE_POINT, hi = Character.MIN_CODE_POINT;
+        for (int cp : _codePoints) {
+            if (cp >= Character.MIN_SURROGATE
+                && cp <= Character.MAX_SURROGATE) {
+                throw new EnigmaException("cannot contain unpaired "
+                                          + "surrogate");
+            }
+            lo = Math.min(lo, cp);
+            hi = Math.max(hi, cp);
         }
-        for (int i = 0; i < chars.length() - 1; i++) {
-            for (int j = i + 1; j < chars.length(); j++) {
-                if (chars.charAt(i) == chars.charAt(j)) {
-                    throw new EnigmaException("cannot contain duplicate");
-                }
+        int n = _codePoints.length;
+        if (n == 0 || hi - lo < DENSE_LIMIT || hi - lo < DENSE_FACTOR * n) {
+            _base = lo;
+            _index = new int[n == 0 ? 0 : hi - lo + 1];
+            _mask = -1;
+        } else {
+            _base = 0;
+            _index = new int[4 * Integer.highestOneBit(n)];
+            _mask = _index.length - 1;
+            _keys = new int[_index.length];
+        }
+        Arrays.fill(_index, -1);
+
+        for (int i = 0; i < n; i++) {
+            if (!put(_codePoints[i], i)) {
+                throw new EnigmaException("cannot contain duplicate");
             }
         }
-        this.seq = chars;
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -27,34 +64,150 @@ class Alphabet {
         this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
     }
 
+    /** Return CHARS, which must not contain *, (, or ). */
+    private static String checked(String chars) {
+        if (chars.contains("*") || chars.contains("(") || chars.contains(")")) {
+            throw new EnigmaException("cannot contain *, (, )");
+        }
+        return chars;
+    }
+
+    /** Return the alphabet of all 256 byte values, in which the
+     *  character with code K, for K < 256, has index K.  In
+     *  configurations and settings lines, each of its characters is
+     *  written as two hexadecimal digits. */
+    static Alphabet bytes() {
+        return BYTES;
+    }
+
+    /** Return the alphabet containing CHARS, which is bytes() if CHARS
+     *  are its characters. */
+    static Alphabet of(String chars) {
+        return chars.equals(BYTES.seq) ? BYTES : new Alphabet(chars);
+    }
+
+    /** Return true iff I am the alphabet of all byte values. */
+    boolean isBytes() {
+        return _bytes;
+    }
+
+    /** Return the characters written as TOKEN in a configuration or
+     *  settings line: TOKEN itself, unless I am bytes(), in which case
+     *  each pair of hexadecimal digits of TOKEN is one character. */
+    String decode(String token) {
+        if (!_bytes) {
+            return token;
+        }
+        if (token.length() % 2 != 0) {
+            throw error("%s is not pairs of hex digits", token);
+        }
+        char[] result = new char[token.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            int k = hexByte(token.charAt(2 * i), token.charAt(2 * i + 1));
+            if (k < 0) {
+                throw error("%s is not pairs of hex digits", token);
+            }
+            result[i] = (char) k;
+        }
+        return new String(result);
+    }
+
+    /** Return character number INDEX as written in a configuration or
+     *  settings line (see decode). */
+    String name(int index) {
+        if (_bytes) {
+            return String.format("%02x", index);
+        }
+        return new String(Character.toChars(_codePoints[index]));
+    }
+
+    /** Return the byte written in hexadecimal as the digits HI and LO,
+     *  or -1 if they are not both hexadecimal digits. */
+    static int hexByte(char hi, char lo) {
+        int h = Character.digit(hi, HEX), l = Character.digit(lo, HEX);
+        return h < 0 || l < 0 ? -1 : h * HEX + l;
+    }
+
+    /** Record that code point CH has index K, returning false if CH is
+     *  already present. */
+    private boolean put(int ch, int k) {
+        if (_mask < 0) {
+            if (_index[ch - _base] >= 0) {
+                return false;
+            }
+            _index[ch - _base] = k;
+            return true;
+        }
+        int h = hash(ch);
+        while (_index[h] >= 0) {
+            if (_keys[h] == ch) {
+                return false;
+            }
+            h = (h + 1) & _mask;
+        }
+        _keys[h] = ch;
+        _index[h] = k;
+        return true;
+    }
+
+    /** Return the initial probe position of CH in a hashed index. */
+    private int hash(int ch) {
+        int h = ch * 0x9E3779B1;
+        return (h ^ (h >>> HASH_SHIFT)) & _mask;
+    }
+
     /** Returns the size of the alphabet. */
     int size() {
-        return seq.length();
+        return _codePoints.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        for (int i = 0; i < seq.length(); i++) {
-            if (seq.charAt(i) == ch) {
-                return true;
-            }
-        }
-        return false;
+        return toInt(ch) >= 0;
+    }
+
+    /** Return true iff every character of mine is a single char, in the
+     *  Basic Multilingual Plane. */
+    boolean isBmp() {
+        return _bmp;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size(), which must be a single char. */
     char toChar(int index) {
-        return seq.charAt(index);
+        int cp = _codePoints[index];
+        if (cp > Character.MAX_VALUE) {
+            throw error("character %d of the alphabet is not a char", index);
+        }
+        return (char) cp;
+    }
+
+    /** Returns the code point of character number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    int codePoint(int index) {
+        return _codePoints[index];
     }
 
     /** Returns the index of character CH which must be in
-     *  the alphabet. This is the inverse of toChar(). */
+     *  the alphabet. This is the inverse of toChar(). Returns -1 if CH
+     *  is not in the alphabet. */
     int toInt(char ch) {
-        for (int i = 0; i < seq.length(); i++) {
-            if (seq.charAt(i) == ch) {
-                return i;
+        return toInt((int) ch);
+    }
+
+    /** Returns the index of the code point CH, or -1 if it is not in the
+     *  alphabet.  This is the inverse of codePoint(). */
+    int toInt(int ch) {
+        if (_mask < 0) {
+            int k = ch - _base;
+            return k >= 0 && k < _index.length ? _index[k] : -1;
+        }
+        int h = hash(ch);
+        while (_index[h] >= 0) {
+            if (_keys[h] == ch) {
+                return _index[h];
             }
+            h = (h + 1) & _mask;
         }
         return -1;
     }
@@ -64,7 +217,57 @@ class Alphabet {
         return seq;
     }
 
+    /** Number of byte values. */
+    private static final int BYTE_VALUES = 256;
+
+    /** Radix of hexadecimal digits. */
+    private static final int HEX = 16;
+
+    /** The alphabet of all byte values. */
+    private static final Alphabet BYTES;
+
+    static {
+        char[] chars = new char[BYTE_VALUES];
+        for (int k = 0; k < BYTE_VALUES; k += 1) {
+            chars[k] = (char) k;
+        }
+        BYTES = new Alphabet(new String(chars), true);
+    }
+
+    /** Largest span of character codes always indexed by a dense table. */
+    private static final int DENSE_LIMIT = 256;
+
+    /** Wider spans are still indexed densely if they are at most this
+     *  many times the size of the alphabet. */
+    private static final int DENSE_FACTOR = 4;
+
+    /** Shift used to fold the high bits of a character hash. */
+    private static final int HASH_SHIFT = 16;
+
     /** seq. */
     private String seq;
 
+    /** The code point of each character, by index. */
+    private final int[] _codePoints;
+
+    /** True iff all of _codePoints are single chars. */
+    private final boolean _bmp;
+
+    /** True iff I am the alphabet of all byte values. */
+    private final boolean _bytes;
+
+    /** Smallest character code covered by a dense _index. */
+    private final int _base;
+
+    /** Either a dense table giving the index of character _base + K at K
+     *  (-1 if absent), or the index values of an open-addressed hash
+     *  table whose keys are in _keys (-1 marking empty slots). */
+    private final int[] _index;
+
+    /** Keys of the hashed index, or null if _index is dense. */
+    private int[] _keys;
+
+    /** Mask for hashed index positions, or -1 if _index is dense. */
+    private final int _mask;
+
 }
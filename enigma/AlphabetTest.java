@@ -33,4 +33,75 @@ public class AlphabetTest {
         v.contains('?');
     }
 
+    @Test
+    public void testSparse() {
+        String e = "A\u00e9\u4e2d\u0416z\uffee";
+        Alphabet v = new Alphabet(e);
+        assertEquals(6, v.size());
+        for (int i = 0; i < e.length(); i++) {
+            assertEquals(i, v.toInt(e.charAt(i)));
+            assertEquals(e.charAt(i), v.toChar(i));
+        }
+        assertFalse(v.contains('B'));
+        assertFalse(v.contains('\u4e2e'));
+        assertEquals(-1, v.toInt('\u0000'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicate() {
+        new Alphabet("AB\u4e2dCB");
+    }
+
+    @Test
+    public void testSupplementary() {
+        String e = "A\ud835\udc00\u4e2d\ud83d\ude00";
+        Alphabet v = new Alphabet(e);
+        assertEquals(4, v.size());
+        assertFalse(v.isBmp());
+        assertTrue(new Alphabet("A\u4e2d").isBmp());
+        assertEquals(1, v.toInt(0x1d400));
+        assertEquals(3, v.toInt(0x1f600));
+        assertEquals(0x1f600, v.codePoint(3));
+        assertEquals(-1, v.toInt('\ud835'));
+        assertEquals('\u4e2d', v.toChar(2));
+        assertEquals("\ud835\udc00", v.name(1));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testUnpairedSurrogate() {
+        new Alphabet("AB\ud835C");
+    }
+
+    @Test
+    public void testLarge() {
+        Alphabet v = new Alphabet(TestUtils.LARGE_ALPHABET);
+        int n = TestUtils.LARGE_BMP + TestUtils.LARGE_SUPPLEMENTARY;
+        assertEquals(n, v.size());
+        int[] codePoints = TestUtils.LARGE_ALPHABET.codePoints().toArray();
+        for (int k = 0; k < n; k += 1) {
+            assertEquals(k, v.toInt(codePoints[k]));
+            assertEquals(codePoints[k], v.codePoint(k));
+        }
+        assertEquals(-1, v.toInt('A'));
+    }
+
+    @Test
+    public void testBytes() {
+        Alphabet b = Alphabet.bytes();
+        assertEquals(256, b.size());
+        assertTrue(b.isBytes());
+        assertFalse(new Alphabet("AB").isBytes());
+        assertEquals(200, b.toInt((char) 200));
+        assertEquals('(', b.toChar('('));
+        assertEquals("\u0000\u00ffA", b.decode("00fF41"));
+        assertEquals("0a", b.name(10));
+        assertEquals("AB", new Alphabet("AB").decode("AB"));
+        assertSame(b, Alphabet.of(b.getSeq()));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadBytes() {
+        Alphabet.bytes().decode("0g");
+    }
+
 }
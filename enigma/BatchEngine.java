@@ -0,0 +1,275 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** A converter of many independent messages, each with its own settings
+ *  line, that gives exactly what converting each message with its own
+ *  copy of a Machine would.  Messages are converted a batch at a time,
+ *  each message of a batch in a lane.  The state of every lane is kept
+ *  in structure-of-arrays form, one primitive array per rotor slot
+ *  indexed by lane, and the rotors' tables are shared by all lanes,
+ *  each lane finding its rotor's table by an offset into one flat
+ *  array.  All lanes advance and convert one character at a time
+ *  together, each step being a loop over lanes with no calls and no
+ *  objects, which keeps the data of a batch in cache and lets the JIT
+ *  compiler unroll and vectorize it.  Lanes are ordered by message
+ *  length, so that the lanes still active are always a prefix.  I am not
+ *  safe for use by more than one thread at a time.
+ *  @author Manu John
+ */
+class BatchEngine {
+
+    /** An engine for messages to be converted by copies of MACHINE, which
+     *  gives my alphabet, slots, pawls, and available rotors.  Settings
+     *  lines are looked up in CACHE, which must be for MACHINE's
+     *  rotors.  Every character of MACHINE's alphabet must be a single
+     *  char. */
+    BatchEngine(Machine machine, SettingsCache cache) {
+        if (!machine.alphabet().isBmp()) {
+            throw error("alphabet has characters outside the Basic "
+                        + "Multilingual Plane");
+        }
+        _machine = machine.copy();
+        _cache = cache;
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        _numRotors = machine.numRotors();
+        _firstMoving = _numRotors - machine.numPawls();
+
+        List<Rotor> rotors = new ArrayList<>(machine.availableRotors());
+        _ids = new IdentityHashMap<>();
+        _forward = new int[rotors.size() * _size];
+        _inverse = new int[rotors.size() * _size];
+        _notch = new boolean[rotors.size() * _size];
+        for (int id = 0; id < rotors.size(); id += 1) {
+            Rotor r = rotors.get(id);
+            _ids.put(r, id);
+            for (int k = 0; k < _size; k += 1) {
+                _forward[id * _size + k] = r.permutation().permute(k);
+                _inverse[id * _size + k] = r.permutation().invert(k);
+                _notch[id * _size + k] = r.atNotch(k);
+            }
+        }
+
+        _base = new int[_numRotors][LANES];
+        _pos = new int[_numRotors][LANES];
+        _offset = new int[_numRotors][LANES];
+        _atNotch = new boolean[_numRotors][LANES];
+        _plug = new int[LANES * _size];
+        _cur = new int[LANES];
+        _text = new int[LANES][];
+        _out = new char[LANES][];
+    }
+
+    /** Return the conversions of MESSAGES, each by a machine set up by the
+     *  settings line at the same index of SETTINGS.  Whitespace in
+     *  messages is dropped, as by Machine.convert. */
+    List<String> convert(List<String> settings, List<String> messages) {
+        if (settings.size() != messages.size()) {
+            throw error("%d settings lines for %d messages",
+                        settings.size(), messages.size());
+        }
+        String[] result = new String[messages.size()];
+        for (int from = 0; from < messages.size(); from += LANES) {
+            int to = Math.min(messages.size(), from + LANES);
+            convertBatch(settings.subList(from, to),
+                         messages.subList(from, to), result, from);
+        }
+        return Arrays.asList(result);
+    }
+
+    /** Convert MESSAGES, at most LANES of them, with the corresponding
+     *  SETTINGS, storing the results in RESULT from index START. */
+    private void convertBatch(List<String> settings, List<String> messages,
+                              String[] result, int start) {
+        int lanes = messages.size();
+        List<Integer> order = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i += 1) {
+            order.add(i);
+        }
+        int[][] texts = new int[lanes][];
+        for (int i = 0; i < lanes; i += 1) {
+            texts[i] = indices(messages.get(i));
+        }
+        Collections.sort(order, (a, b) -> texts[b].length - texts[a].length);
+
+        for (int j = 0; j < lanes; j += 1) {
+            int i = order.get(j);
+            _text[j] = texts[i];
+            _out[j] = new char[texts[i].length];
+            load(j, settings.get(i));
+        }
+
+        int active = lanes;
+        for (int t = 0; active > 0; t += 1) {
+            while (active > 0 && _text[active - 1].length <= t) {
+                active -= 1;
+            }
+            if (active == 0) {
+                break;
+            }
+            advance(active);
+            for (int j = 0; j < active; j += 1) {
+                _cur[j] = _plug[j * _size + _text[j][t]];
+            }
+            for (int k = _numRotors - 1; k >= 0; k -= 1) {
+                apply(_forward, k, active);
+            }
+            for (int k = 1; k < _numRotors; k += 1) {
+                apply(_inverse, k, active);
+            }
+            for (int j = 0; j < active; j += 1) {
+                _out[j][t] = _alphabet.toChar(_plug[j * _size + _cur[j]]);
+            }
+        }
+
+        for (int j = 0; j < lanes; j += 1) {
+            result[start + order.get(j)] = new String(_out[j]);
+            _text[j] = null;
+            _out[j] = null;
+        }
+    }
+
+    /** Set lane J to the settings given by settings line SETTINGS, whose
+     *  whitespace need not be normalized. */
+    private void load(int j, String settings) {
+        settings = SettingsCache.normalize(settings);
+        Settings s = _cache.get(settings);
+        if (s == null) {
+            Main.configure(_machine, settings);
+            s = _machine.settings();
+            _cache.put(settings, s);
+        }
+        for (int k = 0; k < _numRotors; k += 1) {
+            _base[k][j] = _ids.get(s.slots()[k]) * _size;
+            _pos[k][j] = s.positions()[k];
+            _offset[k][j] =
+                Math.floorMod(s.positions()[k] - s.rings()[k], _size);
+        }
+        for (int c = 0; c < _size; c += 1) {
+            _plug[j * _size + c] = s.plugboard().permute(c);
+        }
+    }
+
+    /** Advance the rotors of the first ACTIVE lanes, as
+     *  Machine.convert does before converting a character. */
+    private void advance(int active) {
+        int last = _numRotors - 1;
+        if (_firstMoving > last) {
+            return;
+        }
+        for (int k = _firstMoving + 1; k <= last; k += 1) {
+            int[] base = _base[k], pos = _pos[k];
+            boolean[] atNotch = _atNotch[k];
+            for (int j = 0; j < active; j += 1) {
+                atNotch[j] = _notch[base[j] + pos[j]];
+            }
+        }
+        for (int k = _firstMoving; k < last; k += 1) {
+            boolean[] next = _atNotch[k + 1], here = _atNotch[k];
+            boolean carry = k > _firstMoving;
+            for (int j = 0; j < active; j += 1) {
+                if (next[j] || carry && here[j]) {
+                    step(k, j);
+                }
+            }
+        }
+        for (int j = 0; j < active; j += 1) {
+            step(last, j);
+        }
+    }
+
+    /** Advance the rotor in slot K of lane J one position. */
+    private void step(int k, int j) {
+        int p = _pos[k][j] + 1, o = _offset[k][j] + 1;
+        _pos[k][j] = p == _size ? 0 : p;
+        _offset[k][j] = o == _size ? 0 : o;
+    }
+
+    /** Replace the current character of each of the first ACTIVE lanes
+     *  by its conversion through TABLES, which is _forward or _inverse,
+     *  for the rotor in slot K of the lane at its offset. */
+    private void apply(int[] tables, int k, int active) {
+        int[] base = _base[k], offset = _offset[k];
+        for (int j = 0; j < active; j += 1) {
+            int c = _cur[j] + offset[j];
+            c = tables[base[j] + (c < _size ? c : c - _size)] - offset[j];
+            _cur[j] = c < 0 ? c + _size : c;
+        }
+    }
+
+    /** Return the indices in my alphabet of the characters of MSG other
+     *  than whitespace, all of which must be in my alphabet. */
+    private int[] indices(String msg) {
+        int[] result = new int[msg.length()];
+        int n = 0;
+        for (int i = 0; i < msg.length(); i += 1) {
+            char ch = msg.charAt(i);
+            if (!Character.isWhitespace(ch)) {
+                result[n] = _alphabet.toInt(ch);
+                if (result[n] < 0) {
+                    throw error("character %c is not in the alphabet", ch);
+                }
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Number of messages converted together. */
+    static final int LANES = 256;
+
+    /** Machine used to read settings lines. */
+    private final Machine _machine;
+
+    /** Settings lines already read. */
+    private final SettingsCache _cache;
+
+    /** The alphabet of the messages. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet, number of slots, and first moving slot. */
+    private final int _size, _numRotors, _firstMoving;
+
+    /** The number of each available rotor. */
+    private final Map<Rotor, Integer> _ids;
+
+    /** The conversions by rotor number I of K and of its inverse are at
+     *  index I * _size + K of _forward and _inverse. */
+    private final int[] _forward, _inverse;
+
+    /** Whether rotor number I is at a notch at setting K, at index
+     *  I * _size + K. */
+    private final boolean[] _notch;
+
+    /** _base[K][J] is the number of the rotor in slot K of lane J, times
+     *  _size. */
+    private final int[][] _base;
+
+    /** The setting of slot K of lane J, and the setting less the ring
+     *  setting. */
+    private final int[][] _pos, _offset;
+
+    /** Whether slot K of lane J is at a notch, for the current step. */
+    private final boolean[][] _atNotch;
+
+    /** The plugboard of lane J maps C to _plug[J * _size + C]. */
+    private final int[] _plug;
+
+    /** The character being converted in each lane. */
+    private final int[] _cur;
+
+    /** The message and converted message of each lane. */
+    private final int[][] _text;
+
+    /** See _text. */
+    private final char[][] _out;
+
+}
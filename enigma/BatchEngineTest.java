@@ -0,0 +1,86 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the BatchEngine class.
+ *  @author Manu John
+ */
+public class BatchEngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testMatchesMachine() {
+        Machine machine = navalConfigMachine();
+        Random random = new Random(42);
+        List<String> settings = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 2 * BatchEngine.LANES + 37; i += 1) {
+            settings.add(randomNavalSettings(random));
+            messages.add(randomLetters(random, random.nextInt(700), true));
+        }
+        settings.add(settings.get(0));
+        messages.add("");
+
+        BatchEngine engine = new BatchEngine(machine, new SettingsCache(16));
+        List<String> converted = engine.convert(settings, messages);
+        assertEquals(messages.size(), converted.size());
+        for (int i = 0; i < messages.size(); i += 1) {
+            Machine m = machine.copy();
+            Main.configure(m, settings.get(i));
+            assertEquals(settings.get(i), m.convert(messages.get(i)),
+                         converted.get(i));
+        }
+    }
+
+    @Test
+    public void testCachedSettings() {
+        Machine machine = navalConfigMachine();
+        SettingsCache cache = new SettingsCache(4);
+        BatchEngine engine = new BatchEngine(machine, cache);
+        String line = "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+        List<String> converted =
+            engine.convert(Arrays.asList(line, line),
+                           Arrays.asList("FROM HIS SHOULDER HIAWATHA",
+                                         "FROM HIS SHOULDER HIAWATHA"));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", converted.get(0));
+        assertEquals(converted.get(0), converted.get(1));
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testUnnormalizedSettings() {
+        Machine machine = navalConfigMachine();
+        SettingsCache cache = new SettingsCache(4);
+        BatchEngine engine = new BatchEngine(machine, cache);
+        List<String> converted =
+            engine.convert(Arrays.asList("* B Beta III IV I AXLE (HQ) (EX)",
+                                         " *  B Beta\tIII IV I  AXLE (HQ)"
+                                         + "  (EX) "),
+                           Arrays.asList("FROMHISSHOULDER",
+                                         "FROMHISSHOULDER"));
+        assertEquals(converted.get(0), converted.get(1));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMismatchedLists() {
+        Machine machine = navalConfigMachine();
+        new BatchEngine(machine, new SettingsCache(4))
+            .convert(Arrays.asList("* B Beta III IV I AXLE"),
+                     new ArrayList<>());
+    }
+
+}
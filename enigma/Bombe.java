@@ -0,0 +1,182 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext search for the rotors, settings, and plugboard of a
+ *  Machine, in the manner of the Turing-Welchman Bombe.  For every
+ *  admissible choice of rotors and every setting, I step a copy of the
+ *  machine through the crib, recording its settings at each position
+ *  that the Menu uses, and then try each hypothesis for the plugboard
+ *  partner of the menu's test letter.  A hypothesis is propagated along
+ *  the menu's edges, and through the symmetry of the plugboard, until it
+ *  implies two partners for some letter, which refutes it, or until it
+ *  has reached every letter of the menu, which is a stop.  Most
+ *  hypotheses are refuted within a few edges, so the Scrambler computes
+ *  only the conversions that are asked for, from tables of each rotor's
+ *  conversions at every offset built once for the search.  The search is
+ *  divided into one job for each choice of rotors and setting of the
+ *  leftmost rotor after the reflector, and the jobs are run on a
+ *  ForkJoinPool, each thread using its own copy of the machine.  All
+ *  ring settings are taken to be 0, which finds the true key (with its
+ *  setting shifted by its ring setting) unless a rotor other than the
+ *  fastest turns over within the crib.  The Bombe relies on each
+ *  reflector exchanging pairs of letters, which makes the scrambler its
+ *  own inverse.
+ *  @author Manu John
+ */
+class Bombe {
+
+    /** A Bombe that tests MENU against the rotors of MACHINE.  MACHINE is
+     *  copied, and must not change while I am searching. */
+    Bombe(Machine machine, Menu menu) {
+        for (Rotor r : machine.availableRotors()) {
+            Permutation perm = r.permutation();
+            for (int k = 0; r.reflecting() && k < perm.size(); k += 1) {
+                if (perm.permute(perm.permute(k)) != k) {
+                    throw error("reflector %s does not exchange pairs of "
+                                + "letters", r.name());
+                }
+            }
+        }
+        _menu = menu;
+        _size = machine.alphabet().size();
+        _orders = KeySearch.rotorOrders(machine);
+        _machines = ThreadLocal.withInitial(machine::copy);
+        _forward = new HashMap<>();
+        _backward = new HashMap<>();
+        for (Rotor r : machine.availableRotors()) {
+            _forward.put(r.name(), Scrambler.table(r, false));
+            _backward.put(r.name(), Scrambler.table(r, true));
+        }
+    }
+
+    /** Return all my stops, ordered by choice of rotors and then by
+     *  setting, running the search on POOL. */
+    List<BombeStop> search(ForkJoinPool pool) {
+        if (_orders.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if ((long) _orders.size() * _size > Integer.MAX_VALUE) {
+            throw error("search is too large");
+        }
+        return pool.invoke(new BombeTask(this, 0, _orders.size() * _size));
+    }
+
+    /** Return the number of admissible choices of rotors. */
+    int numOrders() {
+        return _orders.size();
+    }
+
+    /** Return the stops of job JOB: the choice of rotors JOB / alphabet
+     *  size with the rotor after the reflector at setting JOB % alphabet
+     *  size. */
+    List<BombeStop> runJob(int job) {
+        List<BombeStop> stops = new ArrayList<>();
+        Machine m = _machines.get();
+        String[] order = _orders.get(job / _size);
+        Scrambler scrambler =
+            new Scrambler(_menu.length(), _size, order.length);
+        int[] plug = new int[_size];
+        int[] queue = new int[_size];
+        int[] setting = new int[order.length - 1];
+
+        for (int k = 0; k < order.length; k += 1) {
+            scrambler.setRotor(k, _forward.get(order[k]),
+                               _backward.get(order[k]));
+        }
+        Arrays.fill(plug, -1);
+        m.insertRotors(order);
+        setting[0] = job % _size;
+        do {
+            m.setRotors(setting);
+            m.seek(_menu.offset());
+            for (int i = 0; i < _menu.length(); i += 1) {
+                m.step();
+                if (_menu.uses(i)) {
+                    scrambler.record(i, m);
+                }
+            }
+            scrambler.clear();
+            for (int x = 0; x < _size; x += 1) {
+                int n = propagate(scrambler, x, plug, queue);
+                if (n > 0) {
+                    stops.add(new BombeStop(order,
+                                            KeySearch.letters(m, setting),
+                                            Permutation.pairs(
+                                                plug, m.alphabet())));
+                }
+                for (int i = 0; i < Math.abs(n); i += 1) {
+                    plug[queue[i]] = -1;
+                }
+            }
+        } while (KeySearch.increment(setting, 1, _size));
+        return stops;
+    }
+
+    /** Propagate the hypothesis that the plugboard maps the test letter
+     *  to X through the conversions of SCRAMBLER at each crib position,
+     *  recording in PLUG the partner of each letter reached and in QUEUE
+     *  the letters reached.  PLUG must be all -1 to start with.  Returns
+     *  the number of letters reached, negated if the hypothesis was
+     *  refuted. */
+    private int propagate(Scrambler scrambler, int x, int[] plug,
+                          int[] queue) {
+        int tail = assign(_menu.testLetter(), x, plug, queue, 0);
+        for (int head = 0; head < tail; head += 1) {
+            int u = queue[head], v = plug[u];
+            int end = _menu.firstEdge(u) + _menu.degree(u);
+            for (int e = _menu.firstEdge(u); e < end; e += 1) {
+                int w = _menu.other(e);
+                int next = assign(w, scrambler.convert(_menu.step(e), v),
+                                  plug, queue, tail);
+                if (next < 0) {
+                    return -tail;
+                }
+                tail = next;
+            }
+        }
+        return tail;
+    }
+
+    /** Record in PLUG that the plugboard exchanges A and B, adding them
+     *  to the TAIL letters in QUEUE if they are new.  Returns the new
+     *  number of letters in QUEUE, or -1 if this contradicts PLUG. */
+    private static int assign(int a, int b, int[] plug, int[] queue,
+                              int tail) {
+        if (plug[a] == b) {
+            return tail;
+        } else if (plug[a] >= 0 || plug[b] >= 0) {
+            return -1;
+        }
+        plug[a] = b;
+        plug[b] = a;
+        queue[tail++] = a;
+        if (a != b) {
+            queue[tail++] = b;
+        }
+        return tail;
+    }
+
+    /** The menu I test. */
+    private final Menu _menu;
+
+    /** The size of the alphabet. */
+    private final int _size;
+
+    /** Every admissible choice of rotors. */
+    private final List<String[]> _orders;
+
+    /** Each thread's copy of the machine I test. */
+    private final ThreadLocal<Machine> _machines;
+
+    /** Tables of the conversions by each rotor at every offset, and of
+     *  their inverses, as made by Scrambler.table, by rotor name. */
+    private final HashMap<String, int[]> _forward, _backward;
+
+}
@@ -0,0 +1,60 @@
+package enigma;
+
+/** A setting of a Machine at which a Bombe stopped: one at which some
+ *  plugboard is consistent with the whole menu.
+ *  @author Manu John
+ */
+final class BombeStop {
+
+    /** A stop with rotors named ROTORS (the reflector first) at SETTING,
+     *  as for Machine.setRotors, at the start of the ciphertext.
+     *  PLUGBOARD holds the plugboard pairs deduced from the menu, in cycle
+     *  notation. */
+    BombeStop(String[] rotors, String setting, String plugboard) {
+        _rotors = rotors.clone();
+        _setting = setting;
+        _plugboard = plugboard;
+    }
+
+    /** Return the names of my rotors, the reflector first. */
+    String[] rotors() {
+        return _rotors.clone();
+    }
+
+    /** Return my rotor setting. */
+    String setting() {
+        return _setting;
+    }
+
+    /** Return the plugboard pairs deduced at me.  Letters not connected
+     *  to the menu are left out, as are letters that the plugboard maps
+     *  to themselves. */
+    String plugboard() {
+        return _plugboard;
+    }
+
+    /** Return a settings line for me. */
+    String settingsLine() {
+        StringBuilder result = new StringBuilder("*");
+        for (String name : _rotors) {
+            result.append(' ').append(name);
+        }
+        result.append(' ').append(_setting);
+        if (!_plugboard.isEmpty()) {
+            result.append(' ').append(_plugboard);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return settingsLine();
+    }
+
+    /** Names of my rotors. */
+    private final String[] _rotors;
+
+    /** My rotor setting and plugboard. */
+    private final String _setting, _plugboard;
+
+}
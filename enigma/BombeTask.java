@@ -0,0 +1,40 @@
+package enigma;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/** A task that runs part of a Bombe's search, returning its stops in
+ *  order.
+ *  @author Manu John
+ */
+class BombeTask extends RecursiveTask<List<BombeStop>> {
+
+    /** A task that runs jobs FROM .. TO-1 of BOMBE, splitting them among
+     *  subtasks if there is more than one. */
+    BombeTask(Bombe bombe, int from, int to) {
+        _bombe = bombe;
+        _from = from;
+        _to = to;
+    }
+
+    @Override
+    protected List<BombeStop> compute() {
+        if (_to - _from == 1) {
+            return _bombe.runJob(_from);
+        }
+        int mid = _from + (_to - _from) / 2;
+        BombeTask left = new BombeTask(_bombe, _from, mid);
+        left.fork();
+        List<BombeStop> right = new BombeTask(_bombe, mid, _to).compute();
+        List<BombeStop> result = left.join();
+        result.addAll(right);
+        return result;
+    }
+
+    /** The Bombe I am part of. */
+    private final Bombe _bombe;
+
+    /** The range of jobs I run. */
+    private final int _from, _to;
+
+}
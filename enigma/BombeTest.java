@@ -0,0 +1,94 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe and Menu classes.
+ *  @author Manu John
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    private static final String PLAIN =
+        "WETTERVORHERSAGEFUERDIENORDSEEGEBIETEHEUTEKEINREGEN";
+
+    @Test
+    public void testMenu() {
+        Menu menu = new Menu(letters("ABCA"), letters("BCAD"), 0, 4);
+        assertEquals(0, menu.testLetter());
+        assertEquals(3, menu.degree(0));
+        assertEquals(4, menu.numEdges());
+        assertEquals(1, menu.closures());
+        for (int i = 0; i < 4; i += 1) {
+            assertTrue(menu.uses(i));
+        }
+        int e = menu.firstEdge(3);
+        assertEquals(1, menu.degree(3));
+        assertEquals(0, menu.other(e));
+        assertEquals(3, menu.step(e));
+
+        Menu apart = new Menu(letters("AC"), letters("XBDY"), 1, 4);
+        assertEquals(1, apart.numEdges());
+        assertEquals(0, apart.closures());
+        assertTrue(apart.uses(0));
+        assertFalse(apart.uses(1));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMenuSelfEncryption() {
+        new Menu(letters("ABC"), letters("XBZ"), 0, 26);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMenuTooLong() {
+        new Menu(letters("ABC"), letters("XYZ"), 1, 26);
+    }
+
+    @Test
+    public void testFindsKey() {
+        Machine m = navalMachine(3);
+        m.insertRotors(new String[] { "B", "IV", "I" });
+        m.setRotors("QK");
+        m.setPlugboard(new Permutation(NAVAL_PLUGBOARD, UPPER));
+        int[] cipher = encrypt(m, letters(PLAIN));
+        Menu menu = new Menu(letters(PLAIN.substring(5, 35)), cipher, 5,
+                             UPPER.size());
+        Bombe bombe = new Bombe(navalMachine(3), menu);
+        assertEquals(6, bombe.numOrders());
+
+        List<BombeStop> stops = bombe.search(new ForkJoinPool(2));
+        assertFalse(stops.isEmpty());
+        BombeStop found = null;
+        for (BombeStop stop : stops) {
+            if (stop.settingsLine().startsWith("* B IV I QK")) {
+                found = stop;
+            }
+        }
+        assertNotNull(found);
+        assertFalse(found.plugboard().isEmpty());
+        for (String pair : found.plugboard().split(" ")) {
+            assertTrue(pair, NAVAL_PLUGBOARD.contains(pair));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNeedsInvolution() {
+        Alphabet abcd = new Alphabet("ABCD");
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(ABCD)", abcd)));
+        rotors.add(new MovingRotor("X", new Permutation("(AC)", abcd), "A"));
+        Menu menu = new Menu(new int[] { 0 }, new int[] { 1 }, 0, 4);
+        new Bombe(new Machine(abcd, 2, 1, rotors), menu);
+    }
+
+}
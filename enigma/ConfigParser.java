@@ -0,0 +1,315 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A reader of machine configurations.  A configuration is an alphabet,
+ *  the numbers of rotor slots and pawls, and then any number of rotor
+ *  descriptions, each a name, a type (R, N, or M followed by notches),
+ *  and cycles, all separated by whitespace.  An alphabet of BYTES_NAME
+ *  stands for Alphabet.bytes(), whose characters are written in notches
+ *  and cycles as two hexadecimal digits each.  The text is scanned once,
+ *  from left to right, and errors are reported with their line and
+ *  column.
+ *  @author Manu John
+ */
+class ConfigParser {
+
+    /** A parser for the configuration in TEXT. */
+    ConfigParser(String text) {
+        _text = text.toCharArray();
+        _line = 1;
+    }
+
+    /** Return a new machine as described by my text. */
+    Machine parse() {
+        readAlphabet();
+        _numRotors = readCount("no rotors");
+        _numPawls = readCount("no pawls");
+        _rotors = new ArrayList<>();
+        _seen = new int[_alphabet.size()];
+        skipWhitespace();
+        while (!atEnd()) {
+            _rotors.add(readRotor());
+            skipWhitespace();
+        }
+        return new Machine(_alphabet, _numRotors, _numPawls, _rotors);
+    }
+
+    /** Return the alphabet read by parse. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots read by parse. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls read by parse. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return the rotors read by parse, in order. */
+    List<Rotor> rotors() {
+        return _rotors;
+    }
+
+    /** Read the alphabet into _alphabet. */
+    private void readAlphabet() {
+        skipWhitespace();
+        int line = _line, column = column(_pos);
+        if (atEnd()) {
+            throw errorAt(line, column, "no alphabet");
+        }
+        int start = _pos;
+        if (readWord().equals(BYTES_NAME)) {
+            _alphabet = Alphabet.bytes();
+            return;
+        }
+        _pos = start;
+        for (; !atEnd() && !Character.isWhitespace(peek()); _pos += 1) {
+            char c = peek();
+            if (c == '*' || c == '(' || c == ')') {
+                throw errorAt(_line, column(_pos),
+                              "'%c' may not be in the alphabet", c);
+            }
+        }
+        try {
+            _alphabet = new Alphabet(new String(_text, start, _pos - start));
+        } catch (EnigmaException excp) {
+            throw errorAt(line, column, "%s", excp.getMessage());
+        }
+    }
+
+    /** Return the non-negative number that comes next, reporting MISSING
+     *  if there is none. */
+    private int readCount(String missing) {
+        skipWhitespace();
+        int line = _line, column = column(_pos);
+        if (atEnd() || !isDigit(peek())) {
+            throw errorAt(line, column, missing);
+        }
+        int result = 0;
+        for (; !atEnd() && isDigit(peek()); _pos += 1) {
+            result = 10 * result + peek() - '0';
+            if (result > MAX_COUNT) {
+                throw errorAt(line, column, "number is too large");
+            }
+        }
+        if (!atEnd() && !Character.isWhitespace(peek())) {
+            throw errorAt(_line, column(_pos), "'%c' is not a digit",
+                          peek());
+        }
+        return result;
+    }
+
+    /** Return the rotor described next. */
+    private Rotor readRotor() {
+        int line = _line, column = column(_pos);
+        if (peek() == '(') {
+            throw errorAt(line, column, "expected a rotor name");
+        }
+        String name = readWord();
+        skipWhitespace();
+        if (atEnd()) {
+            throw errorAt(line, column, "rotor %s has no type", name);
+        }
+        int typeColumn = column(_pos);
+        String type = readWord();
+        if ("MNR".indexOf(type.charAt(0)) < 0) {
+            throw errorAt(_line, typeColumn,
+                          "rotor type must be M, N, or R");
+        }
+        String notches = type.substring(1);
+        if (type.charAt(0) == 'M' && _alphabet.isBytes()) {
+            try {
+                notches = _alphabet.decode(notches);
+            } catch (EnigmaException excp) {
+                throw errorAt(_line, typeColumn + 1, "%s",
+                              excp.getMessage());
+            }
+        }
+        for (int i = 1; type.charAt(0) == 'M' && !_alphabet.isBytes()
+                 && i < type.length(); ) {
+            int cp = type.codePointAt(i);
+            if (_alphabet.toInt(cp) < 0) {
+                throw errorAt(_line, typeColumn + i,
+                              "notch %c is not in the alphabet", cp);
+            }
+            i += Character.charCount(cp);
+        }
+
+        _stamp += 1;
+        _cycles.setLength(0);
+        skipWhitespace();
+        while (!atEnd() && peek() == '(') {
+            readCycle();
+            if (!atEnd() && peek() != '('
+                && !Character.isWhitespace(peek())) {
+                throw errorAt(_line, column(_pos),
+                              "unexpected '%c' after cycle", peek());
+            }
+            skipWhitespace();
+        }
+
+        try {
+            Permutation perm = new Permutation(_cycles.toString(), _alphabet);
+            switch (type.charAt(0)) {
+            case 'R':
+                return new Reflector(name, perm);
+            case 'N':
+                return new FixedRotor(name, perm);
+            default:
+                return new MovingRotor(name, perm, notches);
+            }
+        } catch (EnigmaException excp) {
+            throw errorAt(line, column, "rotor %s: %s", name,
+                          excp.getMessage());
+        }
+    }
+
+    /** Append the cycle that starts next to _cycles. */
+    private void readCycle() {
+        int column = column(_pos);
+        _cycles.append('(');
+        _pos += 1;
+        if (!atEnd() && peek() == ')') {
+            throw errorAt(_line, column, "empty cycle");
+        }
+        while (true) {
+            if (atEnd() || Character.isWhitespace(peek())) {
+                throw errorAt(_line, column, "cycle is not closed");
+            }
+            char c = peek();
+            _pos += 1;
+            if (c == ')') {
+                break;
+            }
+            int k;
+            if (_alphabet.isBytes()) {
+                k = atEnd() ? -1 : Alphabet.hexByte(c, peek());
+                if (k < 0) {
+                    throw errorAt(_line, column(_pos - 1),
+                                  "expected two hex digits");
+                }
+                _cycles.append(c);
+                c = peek();
+                _pos += 1;
+            } else if (Character.isHighSurrogate(c) && !atEnd()
+                       && Character.isLowSurrogate(peek())) {
+                k = _alphabet.toInt(Character.toCodePoint(c, peek()));
+                _cycles.append(c);
+                c = peek();
+                _pos += 1;
+            } else {
+                k = _alphabet.toInt(c);
+            }
+            if (k < 0) {
+                throw errorAt(_line, column(_pos - 1),
+                              "character %c is not in the alphabet", c);
+            } else if (_seen[k] == _stamp) {
+                throw errorAt(_line, column(_pos - 1),
+                              "character %s appears in more than one place",
+                              _alphabet.name(k));
+            }
+            _seen[k] = _stamp;
+            _cycles.append(c);
+        }
+        _cycles.append(')');
+    }
+
+    /** Return the characters up to the next whitespace or the end of my
+     *  text. */
+    private String readWord() {
+        int start = _pos;
+        while (!atEnd() && !Character.isWhitespace(peek())) {
+            _pos += 1;
+        }
+        return new String(_text, start, _pos - start);
+    }
+
+    /** Move past any whitespace, counting lines.  A line ends in a line
+     *  feed, a carriage return, or both. */
+    private void skipWhitespace() {
+        for (; !atEnd() && Character.isWhitespace(peek()); _pos += 1) {
+            char c = peek();
+            if (c == '\n'
+                || c == '\r' && (_pos + 1 == _text.length
+                                 || _text[_pos + 1] != '\n')) {
+                _line += 1;
+                _lineStart = _pos + 1;
+            }
+        }
+    }
+
+    /** Return true iff I have read all of my text. */
+    private boolean atEnd() {
+        return _pos == _text.length;
+    }
+
+    /** Return the next character of my text. */
+    private char peek() {
+        return _text[_pos];
+    }
+
+    /** Return the column of position POS, which is on the current
+     *  line. */
+    private int column(int pos) {
+        return pos - _lineStart + 1;
+    }
+
+    /** Return true iff C is an ASCII digit. */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Return an exception reporting MSG, formatted with ARGS, at line
+     *  LINE and column COLUMN. */
+    private static EnigmaException errorAt(int line, int column, String msg,
+                                           Object... args) {
+        return error("line %d, column %d: %s", line, column,
+                     String.format(msg, args));
+    }
+
+    /** The alphabet that stands for Alphabet.bytes(). */
+    static final String BYTES_NAME = "(BYTES)";
+
+    /** Largest number of rotor slots or pawls. */
+    private static final int MAX_COUNT = 1 << 16;
+
+    /** The configuration text. */
+    private final char[] _text;
+
+    /** Position of the next character of _text to read. */
+    private int _pos;
+
+    /** Line number of the character at _pos. */
+    private int _line;
+
+    /** Position in _text of the start of line _line. */
+    private int _lineStart;
+
+    /** Alphabet read by parse. */
+    private Alphabet _alphabet;
+
+    /** Numbers of rotor slots and pawls read by parse. */
+    private int _numRotors, _numPawls;
+
+    /** Rotors read by parse. */
+    private List<Rotor> _rotors;
+
+    /** Cycles of the rotor being read. */
+    private final StringBuilder _cycles = new StringBuilder();
+
+    /** Number of the rotor being read. */
+    private int _stamp;
+
+    /** The number of the last rotor in whose cycles each character of
+     *  the alphabet has appeared. */
+    private int[] _seen;
+
+}
@@ -0,0 +1,99 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ConfigParser class.
+ *  @author
+ */
+public class ConfigParserTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** A small, correct configuration. */
+    private static final String CONFIG =
+        "ABCDEF\n"
+        + " 3 1\n"
+        + " R R (AB) (CD)\r\n"
+        + " (EF)\n"
+        + " N N (ABC)(DE)\n"
+        + " M MAD (AF) (BCDE)\n";
+
+    /** Assert that parsing CONFIG fails with a message starting with
+     *  PREFIX. */
+    private void checkError(String config, String prefix) {
+        try {
+            new ConfigParser(config).parse();
+            fail("no error for " + config);
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().startsWith(prefix));
+        }
+    }
+
+    @Test
+    public void testParse() {
+        ConfigParser parser = new ConfigParser(CONFIG);
+        Machine mach = parser.parse();
+        assertEquals(3, mach.numRotors());
+        assertEquals(1, mach.numPawls());
+        assertEquals(6, parser.alphabet().size());
+        assertEquals(3, parser.rotors().size());
+        Rotor r = parser.rotors().get(0);
+        assertTrue(r.reflecting());
+        assertEquals(5, r.permutation().permute(4));
+        Rotor m = parser.rotors().get(2);
+        assertEquals("M", m.name());
+        assertTrue(m.rotates());
+        assertEquals("AD", m.notches());
+        assertEquals(2, m.permutation().permute(1));
+    }
+
+    @Test
+    public void testErrors() {
+        checkError("", "line 1, column 1: no alphabet");
+        checkError("AB(C 3 1", "line 1, column 3:");
+        checkError("ABCD\n  3", "line 2, column 4: no pawls");
+        checkError("ABCD 3x 1", "line 1, column 7:");
+        checkError("ABCD 3 1\n R R (AB)\n (CE)",
+                   "line 3, column 4: character E is not");
+        checkError("ABCD 3 1\n R R (AB) (BC)",
+                   "line 2, column 12: character B appears");
+        checkError("ABCD 3 1\n R R (AB) (C D)",
+                   "line 2, column 11: cycle is not closed");
+        checkError("ABCD 3 1\n R R (AB)x", "line 2, column 10:");
+        checkError("ABCD 3 1\n R R ()", "line 2, column 6: empty cycle");
+        checkError("ABCD 3 1\n R Q (AB)", "line 2, column 4: rotor type");
+        checkError("ABCD 3 1\n I MAX (AB)", "line 2, column 6: notch X");
+        checkError("ABCD 3 1\n R", "line 2, column 2: rotor R has no type");
+        checkError("ABCD 3 1\n R R (AB)", "line 2, column 2: rotor R:");
+    }
+
+    @Test
+    public void testBytes() {
+        ConfigParser parser = new ConfigParser(TestUtils.BYTE_CONFIG);
+        Machine mach = parser.parse();
+        assertTrue(parser.alphabet().isBytes());
+        assertEquals(4, parser.rotors().size());
+        Rotor m = parser.rotors().get(3);
+        assertEquals("M2", m.name());
+        assertEquals("\u007f\u0080", m.notches());
+        assertTrue(m.atNotch(0x80));
+
+        parser = new ConfigParser("(BYTES) 2 1 N N (0001) M M0a (0a0b0c)");
+        parser.parse();
+        Rotor r = parser.rotors().get(1);
+        assertEquals(0x0b, r.permutation().permute(0x0a));
+        assertEquals(0x0a, r.permutation().permute(0x0c));
+        assertEquals(0x2a, r.permutation().permute(0x2a));
+
+        checkError("(BYTES) 2 1 R R (0g01)", "line 1, column 18:");
+        checkError("(BYTES) 2 1 R R (000)", "line 1, column 20:");
+        checkError("(BYTES) 2 1 M M0 (00)", "line 1, column 16:");
+    }
+
+}
@@ -0,0 +1,59 @@
+package enigma;
+
+import java.util.concurrent.RecursiveAction;
+
+/** A task that converts part of a message for Machine.convert(String,
+ *  ForkJoinPool).
+ *  @author Manu John
+ */
+class ConvertTask extends RecursiveAction {
+
+    /** The fewest characters worth giving to a task of their own. */
+    static final int MIN_CHUNK = 1 << 16;
+
+    /** A task that converts BUF[FROM .. TO-1] in place, where BUF holds,
+     *  from index START on, the characters of a message without
+     *  whitespace that MACHINE is about to convert.  Ranges longer than
+     *  CHUNK are split among subtasks.  MACHINE is only copied, never
+     *  changed. */
+    ConvertTask(Machine machine, char[] buf, int start, int from, int to,
+                int chunk) {
+        _machine = machine;
+        _buf = buf;
+        _start = start;
+        _from = from;
+        _to = to;
+        _chunk = chunk;
+    }
+
+    @Override
+    protected void compute() {
+        if (_to - _from <= _chunk) {
+            Machine m = _machine.copy();
+            m.seek(_from - _start);
+            m.convert(_buf, _from, _to - _from, _buf, _from);
+        } else {
+            int mid = _from + (_to - _from) / 2;
+            invokeAll(new ConvertTask(_machine, _buf, _start, _from, mid,
+                                      _chunk),
+                      new ConvertTask(_machine, _buf, _start, mid, _to,
+                                      _chunk));
+        }
+    }
+
+    /** The machine at the start of the message. */
+    private final Machine _machine;
+
+    /** The message being converted. */
+    private final char[] _buf;
+
+    /** The index in _buf of the start of the message. */
+    private final int _start;
+
+    /** The range of _buf I convert. */
+    private final int _from, _to;
+
+    /** The most characters a single task converts. */
+    private final int _chunk;
+
+}
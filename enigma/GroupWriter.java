@@ -0,0 +1,140 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static enigma.EnigmaException.*;
+
+/** Formats converted messages into groups of characters separated by
+ *  blanks, as they are produced, writing them to a Writer in large
+ *  blocks.
+ *  @author Manu John
+ */
+class GroupWriter {
+
+    /** A formatter writing to OUTPUT, putting GROUPSIZE characters in
+     *  each group and starting a new output line before any group that
+     *  would end past column LINEWIDTH (never, if LINEWIDTH is 0). */
+    GroupWriter(Writer output, int groupSize, int lineWidth) {
+        if (groupSize <= 0 || lineWidth < 0) {
+            throw error("bad group size or line width");
+        }
+        _output = output;
+        _groupSize = groupSize;
+        _lineWidth = lineWidth;
+        _buf = new char[BUFFER_SIZE];
+    }
+
+    /** A formatter writing to OUTPUT in groups of five, with no limit on
+     *  the length of a line. */
+    GroupWriter(Writer output) {
+        this(output, DEFAULT_GROUP_SIZE, 0);
+    }
+
+    /** Add the LEN characters of CHARS starting at OFF to the current
+     *  message.  The two chars of a surrogate pair count as one
+     *  character and are never separated. */
+    void write(char[] chars, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            if (_buf.length - _size < 2) {
+                drain();
+            }
+            if (Character.isLowSurrogate(chars[i])) {
+                _buf[_size] = chars[i];
+                _size += 1;
+                continue;
+            }
+            if (_inGroup == _groupSize) {
+                if (_lineWidth > 0
+                    && _column + 1 + _groupSize > _lineWidth) {
+                    newline();
+                } else {
+                    _buf[_size] = ' ';
+                    _size += 1;
+                    _column += 1;
+                }
+                _inGroup = 0;
+            }
+            _buf[_size] = chars[i];
+            _size += 1;
+            _inGroup += 1;
+            _column += 1;
+        }
+    }
+
+    /** Add the characters of S to the current message. */
+    void write(String s) {
+        write(s.toCharArray(), 0, s.length());
+    }
+
+    /** End the current message, which finishes its output line. */
+    void endLine() {
+        newline();
+        _inGroup = 0;
+    }
+
+    /** Send everything formatted so far to my output, and flush it. */
+    void flush() {
+        drain();
+        try {
+            _output.flush();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Put a line separator into _buf. */
+    private void newline() {
+        for (int i = 0; i < NEWLINE.length(); i++) {
+            if (_size == _buf.length) {
+                drain();
+            }
+            _buf[_size] = NEWLINE.charAt(i);
+            _size += 1;
+        }
+        _column = 0;
+    }
+
+    /** Send the contents of _buf to my output. */
+    private void drain() {
+        try {
+            _output.write(_buf, 0, _size);
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+        _size = 0;
+    }
+
+    /** The usual number of characters in a group. */
+    static final int DEFAULT_GROUP_SIZE = 5;
+
+    /** The size of my output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** What ends an output line. */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Where formatted output goes. */
+    private final Writer _output;
+
+    /** The number of characters in a full group. */
+    private final int _groupSize;
+
+    /** The longest output line allowed, or 0 for no limit. */
+    private final int _lineWidth;
+
+    /** Formatted output not yet written, in its first _size
+     *  characters. */
+    private final char[] _buf;
+
+    /** The number of characters in _buf. */
+    private int _size;
+
+    /** The number of characters in the last group of the current
+     *  line. */
+    private int _inGroup;
+
+    /** The length of the current output line so far. */
+    private int _column;
+
+}
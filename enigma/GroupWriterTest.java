@@ -0,0 +1,72 @@
+package enigma;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the GroupWriter class.
+ *  @author
+ */
+public class GroupWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Line separator. */
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    public void testGroups() {
+        StringWriter out = new StringWriter();
+        GroupWriter groups = new GroupWriter(out);
+        groups.write("ABCDEFG");
+        groups.write("HIJ");
+        groups.endLine();
+        groups.endLine();
+        groups.write("KLMNOPQRSTU");
+        groups.endLine();
+        groups.flush();
+        assertEquals("ABCDE FGHIJ" + NL + NL + "KLMNO PQRST U" + NL,
+                     out.toString());
+    }
+
+    @Test
+    public void testLineWidth() {
+        StringWriter out = new StringWriter();
+        GroupWriter groups = new GroupWriter(out, 3, 8);
+        groups.write("ABCDEFGHIJKLMNO");
+        groups.endLine();
+        groups.flush();
+        assertEquals("ABC DEF" + NL + "GHI JKL" + NL + "MNO" + NL,
+                     out.toString());
+    }
+
+    @Test
+    public void testSurrogates() {
+        StringWriter out = new StringWriter();
+        GroupWriter groups = new GroupWriter(out, 2, 0);
+        groups.write("A\ud835\udc00B\ud83d\ude00\ud835\udc01");
+        groups.endLine();
+        groups.flush();
+        assertEquals("A\ud835\udc00 B\ud83d\ude00 \ud835\udc01" + NL,
+                     out.toString());
+    }
+
+    @Test
+    public void testLong() {
+        StringWriter out = new StringWriter();
+        GroupWriter groups = new GroupWriter(out);
+        char[] msg = new char[300000];
+        Arrays.fill(msg, 'Q');
+        groups.write(msg, 0, msg.length);
+        groups.endLine();
+        groups.flush();
+        assertEquals(360000 - 1 + NL.length(), out.toString().length());
+    }
+
+}
@@ -0,0 +1,74 @@
+package enigma;
+
+/** A possible setting of a Machine found by a search, with its score.
+ *  @author Manu John
+ */
+final class KeyCandidate implements Comparable<KeyCandidate> {
+
+    /** A candidate with rotors named ROTORS (the reflector first) at
+     *  SETTING with ring setting RING, whose decryption scored SCORE.
+     *  SETTING and RING are as for Machine.setRotors and Machine.setRing;
+     *  RING is null if it was not searched. */
+    KeyCandidate(String[] rotors, String setting, String ring, double score) {
+        _rotors = rotors.clone();
+        _setting = setting;
+        _ring = ring;
+        _score = score;
+    }
+
+    /** Return the names of my rotors, the reflector first. */
+    String[] rotors() {
+        return _rotors.clone();
+    }
+
+    /** Return my rotor setting. */
+    String setting() {
+        return _setting;
+    }
+
+    /** Return my ring setting, or null if it was not searched. */
+    String ring() {
+        return _ring;
+    }
+
+    /** Return my score. */
+    double score() {
+        return _score;
+    }
+
+    /** Return a settings line for me, with no plugboard. */
+    String settingsLine() {
+        StringBuilder result = new StringBuilder("*");
+        for (String name : _rotors) {
+            result.append(' ').append(name);
+        }
+        result.append(' ').append(_setting);
+        if (_ring != null) {
+            result.append(' ').append(_ring);
+        }
+        return result.toString();
+    }
+
+    /** Orders candidates by score, and then by settings line, so that
+     *  the best candidate is the greatest. */
+    @Override
+    public int compareTo(KeyCandidate other) {
+        int c = Double.compare(_score, other._score);
+        return c != 0 ? c : other.settingsLine().compareTo(settingsLine());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.5f %s", _score, settingsLine());
+    }
+
+    /** Names of my rotors. */
+    private final String[] _rotors;
+
+    /** My rotor and ring settings. */
+    private final String _setting, _ring;
+
+    /** My score. */
+    private final double _score;
+
+}
@@ -0,0 +1,229 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only search for the rotors and settings of a Machine.
+ *  Every admissible choice of rotors (a reflector, then non-moving
+ *  rotors, then moving rotors, none repeated) is tried at every setting,
+ *  and optionally at every ring setting of its moving rotors.  Each
+ *  candidate is scored by the index of coincidence of its decryption,
+ *  which is highest for text in a natural language.  The search is
+ *  divided into one job for each choice of rotors and setting of the
+ *  leftmost rotor after the reflector, and the jobs are run on a
+ *  ForkJoinPool.  Each thread decrypts with its own copy of the machine,
+ *  reused for all its jobs, and keeps only its best candidates.
+ *  @author Manu John
+ */
+class KeySearch {
+
+    /** A search for the COUNT best settings for the rotors of MACHINE with
+     *  plugboard PLUGBOARD, trying all ring settings if RINGS.  MACHINE is
+     *  copied, and must not change while I am searching. */
+    KeySearch(Machine machine, Permutation plugboard, boolean rings,
+              int count) {
+        if (count <= 0) {
+            throw error("must keep at least one candidate");
+        }
+        _plugboard = plugboard;
+        _rings = rings;
+        _count = count;
+        _size = machine.alphabet().size();
+        _orders = rotorOrders(machine);
+        _machines = ThreadLocal.withInitial(machine::copy);
+        _scratch = ThreadLocal.withInitial(() -> new int[_size]);
+    }
+
+    /** Return my best candidates for CIPHERTEXT, a sequence of indices
+     *  into my alphabet, best first, running the search on POOL. */
+    List<KeyCandidate> search(int[] ciphertext, ForkJoinPool pool) {
+        if (_orders.isEmpty() || _size == 0) {
+            return new ArrayList<>();
+        }
+        if ((long) _orders.size() * _size > Integer.MAX_VALUE) {
+            throw error("search is too large");
+        }
+        _ciphertext = ciphertext;
+        List<KeyCandidate> result = new ArrayList<>(
+            pool.invoke(new KeySearchTask(this, 0, _orders.size() * _size)));
+        result.sort(Comparator.reverseOrder());
+        return result;
+    }
+
+    /** Return the number of admissible choices of rotors. */
+    int numOrders() {
+        return _orders.size();
+    }
+
+    /** Return the index of coincidence of a text of N characters, of
+     *  which COUNTS[k] are character k: the chance that two of its
+     *  characters chosen at random are the same. */
+    static double indexOfCoincidence(int[] counts, int n) {
+        if (n < 2) {
+            return 0.0;
+        }
+        long pairs = 0;
+        for (int c : counts) {
+            pairs += (long) c * (c - 1);
+        }
+        return (double) pairs / ((long) n * (n - 1));
+    }
+
+    /** Return the best candidates of job JOB: the choice of rotors
+     *  JOB / alphabet size with the rotor after the reflector at setting
+     *  JOB % alphabet size. */
+    PriorityQueue<KeyCandidate> runJob(int job) {
+        PriorityQueue<KeyCandidate> best = new PriorityQueue<>();
+        Machine m = _machines.get();
+        int[] counts = _scratch.get();
+        String[] order = _orders.get(job / _size);
+        int numRotors = order.length;
+        int[] setting = new int[numRotors - 1];
+        int[] ring = new int[numRotors - 1];
+        int firstRing = numRotors - m.numPawls() - 1;
+
+        m.insertRotors(order);
+        m.setPlugboard(_plugboard);
+        setting[0] = job % _size;
+        do {
+            m.setRing(ring);
+            do {
+                m.setRotors(setting);
+                Arrays.fill(counts, 0);
+                for (int c : _ciphertext) {
+                    counts[m.convert(c)] += 1;
+                }
+                double score =
+                    indexOfCoincidence(counts, _ciphertext.length);
+                if (best.size() < _count || score > best.peek().score()) {
+                    best.add(new KeyCandidate(order, letters(m, setting),
+                                              _rings ? letters(m, ring)
+                                              : null, score));
+                    if (best.size() > _count) {
+                        best.poll();
+                    }
+                }
+            } while (increment(setting, 1, _size));
+        } while (_rings && increment(ring, firstRing, _size));
+        return best;
+    }
+
+    /** Return the best of the candidates in A and B, destroying both. */
+    PriorityQueue<KeyCandidate> merge(PriorityQueue<KeyCandidate> a,
+                                      PriorityQueue<KeyCandidate> b) {
+        if (a.size() < b.size()) {
+            return merge(b, a);
+        }
+        for (KeyCandidate candidate : b) {
+            a.add(candidate);
+            if (a.size() > _count) {
+                a.poll();
+            }
+        }
+        return a;
+    }
+
+    /** Advance VALUES[FROM ..] to their next combination, like the digits
+     *  of a number in base SIZE, returning false after the last (when
+     *  they are all 0 again). */
+    static boolean increment(int[] values, int from, int size) {
+        for (int i = values.length - 1; i >= from; i--) {
+            values[i] += 1;
+            if (values[i] < size) {
+                return true;
+            }
+            values[i] = 0;
+        }
+        return false;
+    }
+
+    /** Return the characters of M's alphabet with indices INDICES. */
+    static String letters(Machine m, int[] indices) {
+        StringBuilder result = new StringBuilder(indices.length);
+        for (int i = 0; i < indices.length; i++) {
+            result.appendCodePoint(m.alphabet().codePoint(indices[i]));
+        }
+        return result.toString();
+    }
+
+    /** Return every admissible choice of rotor names for the slots of
+     *  MACHINE, in a fixed order: a reflector, then non-moving rotors,
+     *  then moving rotors, none repeated. */
+    static List<String[]> rotorOrders(Machine machine) {
+        List<Rotor> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (Rotor r : machine.availableRotors()) {
+            if (r instanceof Reflector) {
+                reflectors.add(r);
+            } else if (r instanceof FixedRotor) {
+                fixed.add(r);
+            } else if (r instanceof MovingRotor) {
+                moving.add(r);
+            }
+        }
+        Comparator<Rotor> byName = Comparator.comparing(Rotor::name);
+        Collections.sort(reflectors, byName);
+        Collections.sort(fixed, byName);
+        Collections.sort(moving, byName);
+
+        List<String[]> result = new ArrayList<>();
+        int numRotors = machine.numRotors();
+        String[] order = new String[numRotors];
+        int firstMoving = numRotors - machine.numPawls();
+        for (Rotor reflector : reflectors) {
+            order[0] = reflector.name();
+            addOrders(result, order, 1, firstMoving, fixed, moving);
+        }
+        return result;
+    }
+
+    /** Add to RESULT every way of completing ORDER from slot K on, using
+     *  rotors from FIXED for slots before FIRSTMOVING and from MOVING for
+     *  the others, without repeating any rotor already in ORDER. */
+    private static void addOrders(List<String[]> result, String[] order, int k,
+                           int firstMoving, List<Rotor> fixed,
+                           List<Rotor> moving) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        for (Rotor r : k < firstMoving ? fixed : moving) {
+            if (!Arrays.asList(order).subList(0, k).contains(r.name())) {
+                order[k] = r.name();
+                addOrders(result, order, k + 1, firstMoving, fixed, moving);
+            }
+        }
+    }
+
+    /** The plugboard assumed for all candidates. */
+    private final Permutation _plugboard;
+
+    /** True iff I search ring settings. */
+    private final boolean _rings;
+
+    /** The number of candidates I keep. */
+    private final int _count;
+
+    /** The size of the alphabet. */
+    private final int _size;
+
+    /** Every admissible choice of rotors. */
+    private final List<String[]> _orders;
+
+    /** Each thread's copy of the machine I search. */
+    private final ThreadLocal<Machine> _machines;
+
+    /** Each thread's letter counts. */
+    private final ThreadLocal<int[]> _scratch;
+
+    /** The ciphertext being searched. */
+    private int[] _ciphertext;
+
+}
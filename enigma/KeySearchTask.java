@@ -0,0 +1,39 @@
+package enigma;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.RecursiveTask;
+
+/** A task that runs part of a KeySearch, returning its best
+ *  candidates.
+ *  @author Manu John
+ */
+class KeySearchTask extends RecursiveTask<PriorityQueue<KeyCandidate>> {
+
+    /** A task that runs jobs FROM .. TO-1 of SEARCH, splitting them among
+     *  subtasks if there is more than one. */
+    KeySearchTask(KeySearch search, int from, int to) {
+        _search = search;
+        _from = from;
+        _to = to;
+    }
+
+    @Override
+    protected PriorityQueue<KeyCandidate> compute() {
+        if (_to - _from == 1) {
+            return _search.runJob(_from);
+        }
+        int mid = _from + (_to - _from) / 2;
+        KeySearchTask left = new KeySearchTask(_search, _from, mid);
+        left.fork();
+        PriorityQueue<KeyCandidate> right =
+            new KeySearchTask(_search, mid, _to).compute();
+        return _search.merge(left.join(), right);
+    }
+
+    /** The search I am part of. */
+    private final KeySearch _search;
+
+    /** The range of jobs I run. */
+    private final int _from, _to;
+
+}
@@ -0,0 +1,107 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Manu John
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    private static final String PLAIN =
+        "ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMESITWASTHEAGEOFWISDOM"
+        + "ITWASTHEAGEOFFOOLISHNESSITWASTHEEPOCHOFBELIEFITWASTHEEPOCH"
+        + "OFINCREDULITYITWASTHESEASONOFLIGHTITWASTHESEASONOFDARKNESS";
+
+    @Test
+    public void testIndexOfCoincidence() {
+        assertEquals(0.0, KeySearch.indexOfCoincidence(new int[] { 1 }, 1),
+                     0.0);
+        assertEquals(1.0,
+                     KeySearch.indexOfCoincidence(new int[] { 4, 0 }, 4),
+                     0.0);
+        assertEquals(2.0 / 6.0,
+                     KeySearch.indexOfCoincidence(new int[] { 2, 2 }, 4),
+                     1e-12);
+    }
+
+    @Test
+    public void testFindsKey() {
+        Machine m = navalMachine(3);
+        m.insertRotors(new String[] { "B", "IV", "I" });
+        m.setRotors("QK");
+        m.setPlugboard(new Permutation("", UPPER));
+        int[] cipher = encrypt(m, letters(PLAIN));
+
+        KeySearch search =
+            new KeySearch(navalMachine(3), new Permutation("", UPPER), false,
+                          3);
+        assertEquals(6, search.numOrders());
+        List<KeyCandidate> best =
+            search.search(cipher, new ForkJoinPool(2));
+        assertEquals(3, best.size());
+        assertEquals("* B IV I QK", best.get(0).settingsLine());
+        assertNull(best.get(0).ring());
+        assertTrue(best.get(0).score() > best.get(1).score());
+        assertTrue(best.get(1).score() >= best.get(2).score());
+    }
+
+    @Test
+    public void testRings() {
+        Alphabet abc = new Alphabet("ABCDEF");
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(AB) (CD) (EF)", abc)));
+        rotors.add(new MovingRotor("X", new Permutation("(ACE) (BDF)", abc),
+                                   "C"));
+        rotors.add(new MovingRotor("Y", new Permutation("(ABCDEF)", abc),
+                                   "E"));
+        Machine m = new Machine(abc, 3, 2, rotors);
+        m.insertRotors(new String[] { "R", "X", "Y" });
+        m.setRotors("DB");
+        m.setRing("CA");
+        m.setPlugboard(new Permutation("", abc));
+        int[] cipher = encrypt(m, new int[30]);
+
+        List<KeyCandidate> best =
+            new KeySearch(m, new Permutation("", abc), true, 1)
+            .search(cipher, ForkJoinPool.commonPool());
+        assertEquals(1, best.size());
+        KeyCandidate top = best.get(0);
+        assertEquals(1.0, top.score(), 0.0);
+        assertNotNull(top.ring());
+
+        Machine check = new Machine(abc, 3, 2, rotors);
+        check.insertRotors(top.rotors());
+        check.setRotors(top.setting());
+        check.setRing(top.ring());
+        check.setPlugboard(new Permutation("", abc));
+        assertEquals(1.0, KeySearch.indexOfCoincidence(
+                         counts(check, cipher, abc.size()), cipher.length),
+                     0.0);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNoCandidates() {
+        new KeySearch(navalMachine(3), new Permutation("", UPPER), false, 0);
+    }
+
+    private int[] counts(Machine m, int[] text, int size) {
+        int[] result = new int[size];
+        for (int c : text) {
+            result[m.convert(c)] += 1;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,234 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** A source of input lines, read from a channel in large blocks.  Each
+ *  line is delivered with every run of whitespace replaced by a single
+ *  blank and with no leading or trailing whitespace, in the same pass
+ *  that finds its end.  Lines end at a line feed, a carriage return, or
+ *  both together.  A file may instead be read by mapping it into memory,
+ *  a window of MappedFiles.WINDOW_SIZE bytes at a time, and decoding
+ *  straight from the mapping.
+ *  @author Manu John
+ */
+class LineReader {
+
+    /** A reader of the characters in SOURCE, which are encoded in
+     *  CHARSET. */
+    LineReader(ReadableByteChannel source, Charset charset) {
+        _source = source;
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _bytes.flip();
+        _chars = CharBuffer.allocate(BUFFER_SIZE);
+        _chars.flip();
+        _line = new char[LINE_SIZE];
+        _file = null;
+        _fileSize = 0;
+    }
+
+    /** A reader of the characters in the file FILE, which are encoded in
+     *  CHARSET, through a memory mapping of the file. */
+    LineReader(Path file, Charset charset) throws IOException {
+        _source = null;
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _bytes = ByteBuffer.allocate(0);
+        _chars = CharBuffer.allocate(BUFFER_SIZE);
+        _chars.flip();
+        _line = new char[LINE_SIZE];
+        _file = FileChannel.open(file, StandardOpenOption.READ);
+        _fileSize = _file.size();
+    }
+
+    /** Read the next line, returning false if there is none. */
+    boolean next() {
+        _length = 0;
+        boolean blank = false, any = false;
+        while (true) {
+            if (!_chars.hasRemaining()) {
+                if (!fill()) {
+                    return any;
+                }
+            }
+            char ch = _chars.get();
+            if (_skipLineFeed) {
+                _skipLineFeed = false;
+                if (ch == '\n') {
+                    continue;
+                }
+            }
+            any = true;
+            if (ch == '\n') {
+                return true;
+            } else if (ch == '\r') {
+                _skipLineFeed = true;
+                return true;
+            } else if (Character.isWhitespace(ch)) {
+                blank = _length > 0;
+            } else {
+                if (blank) {
+                    append(' ');
+                    blank = false;
+                }
+                append(ch);
+            }
+        }
+    }
+
+    /** Return true iff the next line may be read without waiting for
+     *  more input to arrive. */
+    boolean buffered() {
+        if (_file != null || _eof) {
+            return true;
+        }
+        for (int i = _chars.position(); i < _chars.limit(); i++) {
+            char ch = _chars.get(i);
+            if (ch == '\n' || ch == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the characters of the current line, which are the first
+     *  length() characters of the result.  The array is reused by later
+     *  calls to next(). */
+    char[] chars() {
+        return _line;
+    }
+
+    /** Return the number of characters in the current line. */
+    int length() {
+        return _length;
+    }
+
+    /** Return true iff the current line begins with CH. */
+    boolean startsWith(char ch) {
+        return _length > 0 && _line[0] == ch;
+    }
+
+    @Override
+    public String toString() {
+        return new String(_line, 0, _length);
+    }
+
+    /** Add CH to the current line. */
+    private void append(char ch) {
+        if (_length == _line.length) {
+            char[] bigger = new char[2 * _line.length];
+            System.arraycopy(_line, 0, bigger, 0, _length);
+            _line = bigger;
+        }
+        _line[_length] = ch;
+        _length += 1;
+    }
+
+    /** Refill _chars from _source, returning false at end of input. */
+    private boolean fill() {
+        try {
+            _chars.clear();
+            while (_chars.position() == 0) {
+                if (_eof && !_bytes.hasRemaining()) {
+                    _decoder.flush(_chars);
+                    break;
+                }
+                if (_file != null) {
+                    remap();
+                } else if (!_eof) {
+                    _bytes.compact();
+                    if (_source.read(_bytes) < 0) {
+                        _eof = true;
+                    }
+                    _bytes.flip();
+                }
+                CoderResult result = _decoder.decode(_bytes, _chars, _eof);
+                if (result.isError()) {
+                    result.throwException();
+                }
+            }
+            _chars.flip();
+            return _chars.hasRemaining();
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+    }
+
+    /** Make _bytes a mapping of the next window of _file, unless it still
+     *  holds enough of the current one to decode or is the last window,
+     *  after which _file is closed. */
+    private void remap() throws IOException {
+        if (_eof || _bytes.remaining() >= MIN_UNDECODED) {
+            return;
+        }
+        long start = _bytesStart + _bytes.position();
+        long size = Math.min(MappedFiles.WINDOW_SIZE, _fileSize - start);
+        _bytes = _file.map(FileChannel.MapMode.READ_ONLY, start, size);
+        _bytesStart = start;
+        _eof = start + size == _fileSize;
+        if (_eof) {
+            _file.close();
+        }
+    }
+
+    /** Size of the byte and character buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Fewer mapped bytes than this left undecoded may be an incomplete
+     *  character, calling for a new window. */
+    private static final int MIN_UNDECODED = 16;
+
+    /** Initial capacity for a line. */
+    private static final int LINE_SIZE = 1 << 10;
+
+    /** Where my input comes from, unless it is mapped from _file. */
+    private final ReadableByteChannel _source;
+
+    /** The file I map, if my input is mapped. */
+    private final FileChannel _file;
+
+    /** The size of _file. */
+    private final long _fileSize;
+
+    /** The position in _file of the start of _bytes, if mapped. */
+    private long _bytesStart;
+
+    /** Converts _bytes into _chars. */
+    private final CharsetDecoder _decoder;
+
+    /** Bytes read from _source but not yet decoded, or the current
+     *  window of _file. */
+    private ByteBuffer _bytes;
+
+    /** Decoded characters not yet delivered. */
+    private final CharBuffer _chars;
+
+    /** True once _source is exhausted. */
+    private boolean _eof;
+
+    /** True iff the last character read was a carriage return, so that
+     *  a line feed immediately after it does not start a new line. */
+    private boolean _skipLineFeed;
+
+    /** The current line, in its first _length characters. */
+    private char[] _line;
+
+    /** The length of the current line. */
+    private int _length;
+
+}
@@ -0,0 +1,87 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the LineReader class.
+ *  @author
+ */
+public class LineReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a LineReader reading TEXT. */
+    private LineReader reader(String text) {
+        return new LineReader(Channels.newChannel(new ByteArrayInputStream(
+            text.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNormalize() {
+        LineReader in = reader("  * B \t Beta  AXLE \nHELLO   WORLD\t\n");
+        assertTrue(in.next());
+        assertTrue(in.startsWith('*'));
+        assertEquals("* B Beta AXLE", in.toString());
+        assertTrue(in.next());
+        assertEquals("HELLO WORLD", in.toString());
+        assertEquals(11, in.length());
+        assertFalse(in.next());
+    }
+
+    @Test
+    public void testLineEnds() {
+        LineReader in = reader("A\r\nB\rC\n\r\n\nD");
+        String[] expected = { "A", "B", "C", "", "", "D" };
+        for (String line : expected) {
+            assertTrue(in.next());
+            assertEquals(line, in.toString());
+        }
+        assertFalse(in.next());
+        assertFalse(reader("").next());
+    }
+
+    @Test
+    public void testMappedBufferEnds() throws IOException {
+        Path file = Files.createTempFile("enigma", ".in");
+        try {
+            for (int size = (1 << 16) - 4; size <= (1 << 16) + 20;
+                 size += 1) {
+                char[] text = new char[size];
+                Arrays.fill(text, 'A');
+                Files.write(file, new String(text).getBytes(
+                                StandardCharsets.UTF_8));
+                LineReader in = new LineReader(file, StandardCharsets.UTF_8);
+                assertTrue(in.next());
+                assertEquals(size, in.length());
+                assertFalse(in.next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLongLine() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200000; i += 1) {
+            text.append("\u00c9NIGMA ");
+        }
+        LineReader in = reader(text.toString());
+        assertTrue(in.next());
+        assertEquals(text.toString().trim(), in.toString());
+        assertFalse(in.next());
+    }
+
+}
@@ -1,7 +1,13 @@
 package enigma;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static enigma.EnigmaException.*;
 
@@ -12,7 +18,9 @@ class Machine {
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
-     *  available rotors. */
+     *  available rotors.  I use them only as definitions: their wiring,
+     *  notches, and kinds.  The settings of my slots are my own, so that
+     *  any number of machines may share the same rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
 
@@ -21,12 +29,47 @@ class Machine {
                     + "number of rotors and/or pawls");
         }
 
+        HashMap<String, Rotor> available = new HashMap<>();
+        for (Rotor r : allRotors) {
+            available.put(r.name(), r);
+        }
         this._alphabet = alpha;
         this._numRotors = numRotors;
         this._pawls = pawls;
-        this._allRotors = allRotors;
+        this._available = Collections.unmodifiableMap(available);
         this._plugboard = null;
-        this.rotorArr = new Rotor[_numRotors];
+        this._slots = new Rotor[_numRotors];
+        this._settings = new int[_numRotors];
+        this._rings = new int[_numRotors];
+        this._inner = new int[alpha.size()];
+        this._offsets = new int[_numRotors];
+        this._innerDepth = pawls == 0 ? numRotors : numRotors - 1;
+    }
+
+    /** A new Machine in the same state as ORIGINAL, sharing its rotors,
+     *  plugboard, and tables. */
+    private Machine(Machine original) {
+        _alphabet = original._alphabet;
+        _numRotors = original._numRotors;
+        _pawls = original._pawls;
+        _available = original._available;
+        _plugboard = original._plugboard;
+        _slots = original._slots.clone();
+        _settings = original._settings.clone();
+        _rings = original._rings.clone();
+        _offsets = original._offsets.clone();
+        _inner = original._inner.clone();
+        _innerValid = original._innerValid;
+        _innerDepth = original._innerDepth;
+        cond = original.cond;
+    }
+
+    /** Return a new Machine in my current state: the same rotors at the
+     *  same settings and the same plugboard.  Converting with the new
+     *  Machine does not disturb me.  All rotors and permutations are
+     *  shared, so copying costs little more than my settings. */
+    Machine copy() {
+        return new Machine(this);
     }
 
     /** Return the number of rotor slots I have. */
@@ -40,13 +83,30 @@ class Machine {
     }
 
     /** Return Rotor #K, where Rotor #0 is the reflector, and Rotor
-     *  #(numRotors()-1) is the fast Rotor.  Modifying this Rotor has
-     *  undefined results. */
+     *  #(numRotors()-1) is the fast Rotor.  Its own setting is not mine;
+     *  see setting(K).  Modifying this Rotor has undefined results. */
     Rotor getRotor(int k) {
         if (k < 0 || k >= _numRotors) {
             throw new EnigmaException("Error: k is not valid size");
         }
-        return rotorArr[k];
+        return _slots[k];
+    }
+
+    /** Return all my available rotors. */
+    Collection<Rotor> availableRotors() {
+        return _available.values();
+    }
+
+    /** Return the setting of the rotor in slot K. */
+    int setting(int k) {
+        getRotor(k);
+        return _settings[k];
+    }
+
+    /** Return the ring setting of the rotor in slot K. */
+    int ringSetting(int k) {
+        getRotor(k);
+        return _rings[k];
     }
 
     Alphabet alphabet() {
@@ -57,22 +117,28 @@ class Machine {
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
+        if (rotors.length != _numRotors) {
+            throw error("wrong number of rotors");
+        }
         for (int i = 0; i < rotors.length; i++) {
-            Iterator<Rotor> c = _allRotors.iterator();
-            while (c.hasNext()) {
-                Rotor r = c.next();
-                if (r.name().equals(rotors[i])) {
-                    rotorArr[i] = r;
-                }
-            }
-
-            if (rotorArr[i] == null) {
+            Rotor r = _available.get(rotors[i]);
+            if (r == null) {
                 throw new EnigmaException("the "
                        + "rotor name is not in collection");
             }
+            for (int j = 0; j < i; j++) {
+                if (_slots[j] == r) {
+                    throw error("rotor %s is used twice", rotors[i]);
+                }
+            }
+            _slots[i] = r;
         }
+        Arrays.fill(_settings, 0);
+        Arrays.fill(_rings, 0);
         verifyRotorPos();
         cond = true;
+        _innerValid = false;
+        rotorsChanged();
     }
 
     /** get cond.
@@ -83,18 +149,18 @@ class Machine {
 
     /** Verify rotor positions. */
     void verifyRotorPos() {
-        for (int i = 0; i < rotorArr.length; i++) {
-            if (i == 0 && !(rotorArr[i] instanceof Reflector)) {
+        for (int i = 0; i < _slots.length; i++) {
+            if (i == 0 && !(_slots[i] instanceof Reflector)) {
                 throw new EnigmaException("error: first rotor "
                         + "needs to be a reflector");
             } else if (i >= 1 && (i < (numRotors() - numPawls()))
-                    && (rotorArr[i] instanceof Reflector
-                    || !(rotorArr[i] instanceof FixedRotor))) {
+                    && (_slots[i] instanceof Reflector
+                    || !(_slots[i] instanceof FixedRotor))) {
                 throw new EnigmaException("group S-P "
                         + "should be non-moving");
             } else if ((i >= (numRotors() - numPawls()))
                     && i < numRotors()
-                    && !(rotorArr[i] instanceof MovingRotor)) {
+                    && !(_slots[i] instanceof MovingRotor)) {
                 throw new EnigmaException("error: "
                         + "rotors at S+P should be moving");
             }
@@ -105,24 +171,83 @@ class Machine {
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        if (setting.length() != _numRotors - 1) {
+        setAll(_settings, setting);
+    }
+
+    /** Set the ring with SETTING. */
+    void setRing(String setting) {
+        setAll(_rings, setting);
+    }
+
+    /** Set my rotors according to SETTING, which must hold numRotors()-1
+     *  indices of characters in my alphabet, as for setRotors(String). */
+    void setRotors(int[] setting) {
+        setAll(_settings, setting);
+    }
+
+    /** Set the ring with SETTING, which must be as for setRotors(int[]). */
+    void setRing(int[] setting) {
+        setAll(_rings, setting);
+    }
+
+    /** Set VALUES[1..] to SETTING, which must hold numRotors()-1 indices
+     *  into my alphabet. */
+    private void setAll(int[] values, int[] setting) {
+        if (setting.length != _numRotors - 1) {
             throw new EnigmaException("size of setting is incorrect");
         }
-
-        for (int i = 0; i < setting.length(); i++) {
-            rotorArr[i + 1].set(setting.charAt(i));
+        for (int i = 0; i < setting.length; i++) {
+            if (setting[i] < 0 || setting[i] >= _alphabet.size()) {
+                throw error("setting %d is out of range", setting[i]);
+            }
         }
+        System.arraycopy(setting, 0, values, 1, setting.length);
+        rotorsChanged();
     }
 
-    /** Set the ring with SETTING. */
-    void setRing(String setting) {
-        if (setting.length() != _numRotors - 1) {
+    /** Set VALUES[1..] to the indices of the characters of SETTING, which
+     *  must be numRotors()-1 characters of my alphabet. */
+    private void setAll(int[] values, String setting) {
+        if (setting.codePointCount(0, setting.length()) != _numRotors - 1) {
             throw new EnigmaException("size of setting is incorrect");
         }
 
-        for (int i = 0; i < setting.length(); i++) {
-            rotorArr[i + 1].setRinger(setting.charAt(i));
+        for (int i = 0, k = 1; i < setting.length(); k++) {
+            int cp = setting.codePointAt(i);
+            values[k] = toIndex(cp);
+            i += Character.charCount(cp);
+        }
+        rotorsChanged();
+    }
+
+    /** Return a snapshot of my current rotors, settings, and plugboard,
+     *  which must all have been set. */
+    Settings settings() {
+        if (!cond || _plugboard == null) {
+            throw error("machine is not set up");
+        }
+        if (!_innerValid) {
+            buildInner();
+        }
+        return new Settings(_available, _slots.clone(), _settings.clone(),
+                            _rings.clone(), _plugboard, _inner.clone());
+    }
+
+    /** Set my rotors, settings, and plugboard to SETTINGS, which must
+     *  come from me or a copy of me. */
+    void setSettings(Settings settings) {
+        if (settings.available() != _available
+            || settings.slots().length != _numRotors) {
+            throw error("settings are for a different machine");
         }
+        System.arraycopy(settings.slots(), 0, _slots, 0, _numRotors);
+        System.arraycopy(settings.positions(), 0, _settings, 0, _numRotors);
+        System.arraycopy(settings.rings(), 0, _rings, 0, _numRotors);
+        _plugboard = settings.plugboard();
+        cond = true;
+        rotorsChanged();
+        System.arraycopy(settings.inner(), 0, _inner, 0, _inner.length);
+        _innerValid = true;
     }
 
     /** Return the current plugboard's permutation. */
@@ -135,94 +260,614 @@ class Machine {
         this._plugboard = plugboard;
     }
 
+    /** Report each character I convert to TRACER from now on. */
+    void setTracer(Tracer tracer) {
+        _tracer = tracer;
+    }
+
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
         advanceRotors();
-        if (Main.verbose()) {
-            System.err.printf("[");
-            for (int r = 1; r < numRotors(); r += 1) {
-                System.err.printf("%c",
-                        alphabet().toChar(getRotor(r).setting()));
-            }
-            System.err.printf("] %c -> ", alphabet().toChar(c));
-        }
-        c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(c));
+        if (_tracer != Tracer.NONE) {
+            return convertTraced(c);
         }
+        c = _plugboard.permute(c);
         c = applyRotors(c);
-        c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c%n", alphabet().toChar(c));
+        return _plugboard.permute(c);
+    }
+
+    /** Return the result of converting C, plugboard included, with my
+     *  rotors at their current settings, without advancing them. */
+    int substitute(int c) {
+        return _plugboard.permute(applyRotors(_plugboard.permute(c)));
+    }
+
+    /** Return the result of converting C as convert(C) does once my
+     *  rotors have advanced, reporting each stage to _tracer. */
+    private int convertTraced(int c) {
+        _tracer.keypress(this, c);
+        c = _plugboard.permute(c);
+        _tracer.mapped(c);
+        for (int i = _slots.length - 1; i >= 0; i--) {
+            c = convertForward(i, c);
+            _tracer.mapped(c);
+        }
+        for (int i = 1; i < _slots.length; i++) {
+            c = convertBackward(i, c);
+            _tracer.mapped(c);
         }
+        c = _plugboard.permute(c);
+        _tracer.converted(c);
         return c;
     }
 
-    /** Advance all rotors to their next position. */
+    /** Advance all rotors to their next position.  The fast rotor always
+     *  moves; any other moving rotor moves if the rotor to its right is at
+     *  a notch, or if it is itself at a notch and the rotor to its left
+     *  also moves (double stepping).  All notches are read before any
+     *  rotor moves. */
     private void advanceRotors() {
-        boolean[] canAdv = new boolean[rotorArr.length];
-        canAdv[rotorArr.length - 1] = true;
-        for (int i = canAdv.length - 2; i >= 0; i--) {
-            if (rotorArr[i].rotates() && rotorArr[i + 1].atNotch()) {
-                canAdv[i] = true;
-                canAdv[i + 1] = true;
-            } else {
-                canAdv[i] = false;
+        int last = _slots.length - 1;
+        int first = _numRotors - _pawls;
+        if (first > last) {
+            return;
+        }
+        boolean notch = false;
+        for (int i = first; i < last; i++) {
+            boolean next = _slots[i + 1].atNotch(_settings[i + 1]);
+            if (next || notch) {
+                stepRotor(i);
+            }
+            notch = next;
+        }
+        stepRotor(last);
+    }
+
+    /** Advance the rotor in slot K one position. */
+    private void stepRotor(int k) {
+        int size = _inner.length;
+        _settings[k] = _settings[k] + 1 == size ? 0 : _settings[k] + 1;
+        _offsets[k] = _offsets[k] + 1 == size ? 0 : _offsets[k] + 1;
+        if (k < _innerDepth) {
+            _innerValid = false;
+        }
+    }
+
+    /** Advance my rotors as converting one character would, without
+     *  converting it. */
+    void step() {
+        advanceRotors();
+    }
+
+    /** Advance my rotors to the settings they would have after converting
+     *  OFFSET more characters, without converting them. */
+    void seek(long offset) {
+        System.arraycopy(settingsAfter(offset), 0, _settings, 0, _numRotors);
+        rotorsChanged();
+    }
+
+    /** Return the setting of my rotors after N more keypresses, in the
+     *  form accepted by setRotors.  Does not change my settings. */
+    String positionAfter(long n) {
+        int[] pos = settingsAfter(n);
+        StringBuilder result = new StringBuilder(_numRotors - 1);
+        for (int i = 1; i < _slots.length; i++) {
+            result.appendCodePoint(_alphabet.codePoint(pos[i]));
+        }
+        return result.toString();
+    }
+
+    /** Return the settings of the rotors in each of my slots after N more
+     *  keypresses.  Rather than stepping N times, this skips over runs of
+     *  keypresses during which only faster rotors move, and over repeats
+     *  of the cycle of states that the faster rotors go through, so that
+     *  its cost does not depend on N. */
+    private int[] settingsAfter(long n) {
+        if (n < 0) {
+            throw error("cannot seek backwards");
+        }
+        int[] pos = _settings.clone();
+        int first = _numRotors - _pawls;
+        if (first < _numRotors) {
+            runTo(pos, first, n, false);
+        }
+        return pos;
+    }
+
+    /** Advance the settings POS of the rotors from slot I to the fast
+     *  rotor by up to K keypresses, stopping early before any keypress
+     *  at which the rotor in slot I is at a notch if STOP.  Returns the
+     *  number of keypresses made. */
+    private long runTo(int[] pos, int i, long k, boolean stop) {
+        int size = _alphabet.size();
+        Rotor r = _slots[i];
+        long need = stop ? notchDistance(r, pos[i]) : -1;
+        if (i == _slots.length - 1) {
+            long c = need < 0 ? k : Math.min(k, need);
+            pos[i] = (int) ((pos[i] + c) % size);
+            return c;
+        }
+        if (need == 0) {
+            return 0;
+        }
+
+        HashMap<String, long[]> seen = need < 0 ? new HashMap<>() : null;
+        long done = 0, pushes = 0;
+        while (true) {
+            done += runTo(pos, i + 1, k - done, true);
+            if (done == k) {
+                break;
+            }
+            if (seen != null) {
+                String key = Arrays.toString(
+                    Arrays.copyOfRange(pos, i + 1, pos.length));
+                long[] prev = seen.putIfAbsent(key,
+                                               new long[] { done, pushes });
+                if (prev != null) {
+                    long cycles = (k - done) / (done - prev[0]);
+                    long moves = cycles * (pushes - prev[1]);
+                    done += cycles * (done - prev[0]);
+                    pushes += moves;
+                    pos[i] = (int) ((pos[i] + moves % size) % size);
+                    seen = null;
+                    if (done == k) {
+                        break;
+                    }
+                }
+            }
+            stepFrom(pos, i);
+            done += 1;
+            pushes += 1;
+            if (pushes == need || done == k) {
+                break;
+            }
+        }
+        return done;
+    }
+
+    /** Return the number of steps the rotor R must take from setting POSN
+     *  to reach one of its notches, or -1 if it has none. */
+    private long notchDistance(Rotor r, int posn) {
+        int size = _alphabet.size();
+        for (int d = 0; d < size; d++) {
+            if (r.atNotch((posn + d) % size)) {
+                return d;
             }
         }
+        return -1;
+    }
 
-        int i = 0;
-        while (i < canAdv.length) {
-            if (canAdv[i]) {
-                rotorArr[i].advance();
+    /** Apply one keypress to the settings POS of the rotors from slot I
+     *  to the fast rotor, as advanceRotors would, assuming the rotor to
+     *  the left of slot I moves iff I is not the leftmost moving slot. */
+    private void stepFrom(int[] pos, int i) {
+        int last = _slots.length - 1;
+        boolean notch =
+            i > _numRotors - _pawls && _slots[i].atNotch(pos[i]);
+        for (int j = i; j < last; j++) {
+            boolean next = _slots[j + 1].atNotch(pos[j + 1]);
+            if (next || notch) {
+                pos[j] = (pos[j] + 1) % _alphabet.size();
             }
-            i++;
+            notch = next;
         }
+        pos[last] = (pos[last] + 1) % _alphabet.size();
     }
 
     /** Return the result of applying the rotors to the character C (as an
      *  index in the range 0..alphabet size - 1). */
     private int applyRotors(int c) {
-        for (int i = rotorArr.length - 1; i >= 0; i--) {
-            c = rotorArr[i].convertForward(c);
+        if (!_innerValid) {
+            buildInner();
         }
 
-        for (int i = 1; i < rotorArr.length; i++) {
-            c = rotorArr[i].convertBackward(c);
+        int size = _inner.length;
+        for (int i = _slots.length - 1; i >= _innerDepth; i--) {
+            int s = _offsets[i];
+            c += s;
+            c = _slots[i].permutation().permute(c < size ? c : c - size);
+            c -= s;
+            if (c < 0) {
+                c += size;
+            }
+        }
+        c = _inner[c];
+        for (int i = _innerDepth; i < _slots.length; i++) {
+            int s = _offsets[i];
+            c += s;
+            c = _slots[i].permutation().invert(c < size ? c : c - size);
+            c -= s;
+            if (c < 0) {
+                c += size;
+            }
         }
-
         return c;
     }
 
+    /** Set _inner to the combined mapping of the rotors in slots 0 up to
+     *  _innerDepth: into them from the right, off the reflector, and back
+     *  out again. */
+    private void buildInner() {
+        for (int c = 0; c < _inner.length; c++) {
+            int e = c;
+            for (int i = _innerDepth - 1; i >= 0; i--) {
+                e = convertForward(i, e);
+            }
+            for (int i = 1; i < _innerDepth; i++) {
+                e = convertBackward(i, e);
+            }
+            _inner[c] = e;
+        }
+        _innerValid = true;
+    }
+
+    /** Return the conversion of P by the rotor in slot K at its current
+     *  setting and ring setting, as for PositionedRotor.convertForward. */
+    private int convertForward(int k, int p) {
+        Permutation perm = _slots[k].permutation();
+        return perm.wrap(perm.permute(perm.wrap(p + _offsets[k]))
+                         - _offsets[k]);
+    }
+
+    /** Return the conversion of E by the inverse of the rotor in slot K at
+     *  its current setting and ring setting, as for
+     *  PositionedRotor.convertBackward. */
+    private int convertBackward(int k, int e) {
+        Permutation perm = _slots[k].permutation();
+        return perm.wrap(perm.invert(perm.wrap(e + _offsets[k]))
+                         - _offsets[k]);
+    }
+
+    /** Record that the settings of the rotors in my slots may have
+     *  changed other than by advanceRotors.  The inner table is kept if
+     *  the rotors it covers are at the same offsets as before. */
+    private void rotorsChanged() {
+        int size = _inner.length;
+        for (int i = 0; i < _slots.length; i++) {
+            int offset = Math.floorMod(_settings[i] - _rings[i], size);
+            if (offset != _offsets[i] && i < _innerDepth) {
+                _innerValid = false;
+            }
+            _offsets[i] = offset;
+        }
+    }
+
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String s = "";
-        for (int i = 0; i < msg.length(); i++) {
-            if (msg.charAt(i) == ' ') {
-                continue;
-            } else {
-                s += _alphabet.toChar(convert(_alphabet.toInt(msg.charAt(i))));
+        char[] buf = msg.toCharArray();
+        char[] out = _alphabet.isBmp() ? buf : new char[2 * buf.length];
+        int n = convert(buf, 0, buf.length, out, 0);
+        return new String(out, 0, n);
+    }
+
+    /** Returns the encoding/decoding of MSG, exactly as convert(MSG)
+     *  would, and leaves my rotors as convert(MSG) would.  Long messages
+     *  are cut into pieces that are converted concurrently on POOL, each
+     *  by a copy of me sought forward to the start of its piece. */
+    String convert(String msg, ForkJoinPool pool) {
+        if (!_alphabet.isBmp()) {
+            return convert(msg);
+        }
+        char[] buf = msg.toCharArray();
+        return new String(buf, 0, convert(buf, 0, buf.length, buf, 0, pool));
+    }
+
+    /** Convert the LEN characters of IN starting at OFF into OUT starting
+     *  at OUTOFF, exactly as convert(IN, OFF, LEN, OUT, OUTOFF) would,
+     *  returning the number of characters stored.  Long messages are
+     *  converted concurrently on POOL, as for convert(String,
+     *  ForkJoinPool), unless my alphabet is not isBmp(). */
+    int convert(char[] in, int off, int len, char[] out, int outOff,
+                ForkJoinPool pool) {
+        if (!_alphabet.isBmp()) {
+            return convert(in, off, len, out, outOff);
+        }
+        int n = 0;
+        for (int i = off, end = off + len; i < end; i++) {
+            if (!Character.isWhitespace(in[i])) {
+                toIndex(in[i]);
+                out[outOff + n] = in[i];
+                n++;
+            }
+        }
+        int chunk = Math.max(ConvertTask.MIN_CHUNK,
+                             n / (pool.getParallelism() * PIECES_PER_THREAD));
+        if (n <= chunk) {
+            return convert(out, outOff, n, out, outOff);
+        }
+        pool.invoke(new ConvertTask(this, out, outOff, outOff, outOff + n,
+                                    chunk));
+        seek(n);
+        return n;
+    }
+
+    /** Convert the LEN characters of IN starting at OFF, skipping
+     *  whitespace, and store the results in OUT starting at OUTOFF,
+     *  updating the state of the rotors accordingly.  Returns the
+     *  number of characters stored.  IN and OUT may be the same array
+     *  provided OUTOFF <= OFF, unless my alphabet is not isBmp(), in
+     *  which case they must differ and OUT must have room for 2 * LEN
+     *  characters. */
+    int convert(char[] in, int off, int len, char[] out, int outOff) {
+        if (!_alphabet.isBmp()) {
+            return convertCodePoints(in, off, len, out, outOff);
+        }
+        int k = outOff;
+        for (int i = off, end = off + len; i < end; i++) {
+            char ch = in[i];
+            if (!Character.isWhitespace(ch)) {
+                out[k] = _alphabet.toChar(convert(toIndex(ch)));
+                k++;
+            }
+        }
+        return k - outOff;
+    }
+
+    /** As for convert(char[], int, int, char[], int), for an alphabet
+     *  that is not isBmp(), whose characters may be surrogate pairs. */
+    private int convertCodePoints(char[] in, int off, int len, char[] out,
+                                  int outOff) {
+        int k = outOff;
+        for (int i = off, end = off + len; i < end; ) {
+            int cp = Character.codePointAt(in, i, end);
+            i += Character.charCount(cp);
+            if (!Character.isWhitespace(cp)) {
+                k += Character.toChars(_alphabet.codePoint(
+                          convert(toIndex(cp))), out, k);
             }
         }
-        return s;
+        return k - outOff;
     }
 
+    /** Convert the characters remaining in IN, skipping whitespace, and
+     *  put the results into OUT, stopping early if OUT fills.  Returns
+     *  the number of characters put.  If my alphabet is not isBmp(), a
+     *  surrogate pair is never split: one at the end of IN is left
+     *  there, and conversion stops while OUT has room for fewer than
+     *  two characters. */
+    int convert(CharBuffer in, CharBuffer out) {
+        int n = 0;
+        if (!_alphabet.isBmp()) {
+            while (in.hasRemaining() && out.remaining() >= 2) {
+                char ch = in.get();
+                int cp = ch;
+                if (Character.isHighSurrogate(ch)) {
+                    if (!in.hasRemaining()) {
+                        in.position(in.position() - 1);
+                        break;
+                    }
+                    cp = Character.toCodePoint(ch, in.get());
+                }
+                if (!Character.isWhitespace(cp)) {
+                    int k = _alphabet.codePoint(convert(toIndex(cp)));
+                    out.put(Character.toChars(k));
+                    n += Character.charCount(k);
+                }
+            }
+            return n;
+        }
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            int len;
+            while ((len = Math.min(in.remaining(), out.remaining())) > 0) {
+                int k = convert(in.array(), in.arrayOffset() + in.position(),
+                                len, out.array(),
+                                out.arrayOffset() + out.position());
+                in.position(in.position() + len);
+                out.position(out.position() + k);
+                n += k;
+            }
+            return n;
+        }
+        while (in.hasRemaining() && out.hasRemaining()) {
+            char ch = in.get();
+            if (!Character.isWhitespace(ch)) {
+                out.put(_alphabet.toChar(convert(toIndex(ch))));
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** Convert the bytes remaining in IN, each taken as the character
+     *  with that code (ISO-8859-1), skipping whitespace, and put the
+     *  results into OUT as bytes in the same way, stopping early if OUT
+     *  fills.  Returns the number of bytes put.  If my alphabet is
+     *  Alphabet.bytes(), every byte is converted, whitespace included,
+     *  as by convert(byte[], int, int, byte[], int). */
+    int convert(ByteBuffer in, ByteBuffer out) {
+        if (_alphabet.isBytes()) {
+            return convertBytes(in, out);
+        }
+        int n = 0;
+        while (in.hasRemaining() && out.hasRemaining()) {
+            char ch = (char) (in.get() & BYTE_MASK);
+            if (!Character.isWhitespace(ch)) {
+                int result = _alphabet.codePoint(convert(toIndex(ch)));
+                if (result > BYTE_MASK) {
+                    throw error("character %c does not fit in a byte",
+                                result);
+                }
+                out.put((byte) result);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** Convert as many of the bytes remaining in IN as fit in OUT, for
+     *  convert(ByteBuffer, ByteBuffer) with a byte alphabet, returning
+     *  the number converted. */
+    private int convertBytes(ByteBuffer in, ByteBuffer out) {
+        int n = Math.min(in.remaining(), out.remaining());
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            convert(in.array(), in.arrayOffset() + in.position(), n,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + n);
+            out.position(out.position() + n);
+            return n;
+        }
+        if (_byteBuffer == null) {
+            _byteBuffer = new byte[BYTE_CHUNK];
+        }
+        for (int left = n; left > 0; ) {
+            int k = Math.min(left, BYTE_CHUNK);
+            in.get(_byteBuffer, 0, k);
+            convert(_byteBuffer, 0, k, _byteBuffer, 0);
+            out.put(_byteBuffer, 0, k);
+            left -= k;
+        }
+        return n;
+    }
+
+    /** Convert the LEN bytes of IN starting at OFF into OUT starting at
+     *  OUTOFF, updating the state of my rotors accordingly.  My alphabet
+     *  must be Alphabet.bytes(), so that every byte is a character,
+     *  whose index is its unsigned value.  The rotors and plugboard are
+     *  applied through tables of bytes, and as the alphabet size is 256,
+     *  rotor offsets are added and removed by masking, with no
+     *  comparisons.  The rotors that never move are combined into one
+     *  table, which, unlike _inner, need not be rebuilt as the moving
+     *  rotors step.  IN and OUT may be the same array provided OUTOFF <=
+     *  OFF. */
+    void convert(byte[] in, int off, int len, byte[] out, int outOff) {
+        if (!_alphabet.isBytes()) {
+            throw error("alphabet is not bytes");
+        }
+        if (_tracer != Tracer.NONE) {
+            for (int i = 0; i < len; i++) {
+                out[outOff + i] = (byte) convert(in[off + i] & BYTE_MASK);
+            }
+            return;
+        }
+        loadByteTables();
+        byte[] plug = _bytePlugboard, inner = _byteInner;
+        int first = _numRotors - _pawls, last = _slots.length - 1;
+        for (int i = 0; i < len; i++) {
+            advanceRotors();
+            int c = plug[in[off + i] & BYTE_MASK] & BYTE_MASK;
+            for (int k = last; k >= first; k--) {
+                int s = _offsets[k];
+                c = (_byteForward[k][(c + s) & BYTE_MASK] - s) & BYTE_MASK;
+            }
+            c = inner[c] & BYTE_MASK;
+            for (int k = first; k <= last; k++) {
+                int s = _offsets[k];
+                c = (_byteInverse[k][(c + s) & BYTE_MASK] - s) & BYTE_MASK;
+            }
+            out[outOff + i] = plug[c];
+        }
+    }
+
+    /** Set the byte tables of my slots and plugboard from their current
+     *  rotors and permutation, and the table of my non-moving rotors at
+     *  their current offsets, for a byte alphabet. */
+    private void loadByteTables() {
+        int size = _inner.length;
+        if (_byteForward == null) {
+            _byteSlots = new Rotor[_slots.length];
+            _byteForward = new byte[_slots.length][size];
+            _byteInverse = new byte[_slots.length][size];
+            _bytePlugboard = new byte[size];
+            _byteInner = new byte[size];
+        }
+        for (int k = 0; k < _slots.length; k++) {
+            if (_byteSlots[k] != _slots[k]) {
+                Permutation perm = _slots[k].permutation();
+                for (int c = 0; c < size; c++) {
+                    _byteForward[k][c] = (byte) perm.permute(c);
+                    _byteInverse[k][c] = (byte) perm.invert(c);
+                }
+                _byteSlots[k] = _slots[k];
+            }
+        }
+        for (int c = 0; c < size; c++) {
+            _bytePlugboard[c] = (byte) _plugboard.permute(c);
+        }
+        int first = _numRotors - _pawls;
+        for (int c = 0; c < size; c++) {
+            int e = c;
+            for (int k = first - 1; k >= 0; k--) {
+                int s = _offsets[k];
+                e = (_byteForward[k][(e + s) & BYTE_MASK] - s) & BYTE_MASK;
+            }
+            for (int k = 1; k < first; k++) {
+                int s = _offsets[k];
+                e = (_byteInverse[k][(e + s) & BYTE_MASK] - s) & BYTE_MASK;
+            }
+            _byteInner[c] = (byte) e;
+        }
+    }
+
+    /** Return the index of CH in my alphabet, which it must be in. */
+    private int toIndex(char ch) {
+        return toIndex((int) ch);
+    }
+
+    /** Return the index of the code point CP in my alphabet, which it
+     *  must be in. */
+    private int toIndex(int cp) {
+        int c = _alphabet.toInt(cp);
+        if (c < 0) {
+            throw error("character %c is not in the alphabet", cp);
+        }
+        return c;
+    }
+
+    /** The number of pieces per thread into which convert(String,
+     *  ForkJoinPool) cuts a long message, to balance the load. */
+    private static final int PIECES_PER_THREAD = 4;
+
+    /** Mask selecting the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Number of bytes converted at a time from a buffer without an
+     *  accessible array. */
+    private static final int BYTE_CHUNK = 1 << 13;
 
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
     /** number of Rotors. */
-    private int _numRotors;
+    private final int _numRotors;
     /** number of pawls. */
-    private int _pawls;
-    /** collection of all rotors. */
-    private Collection<Rotor> _allRotors;
-    /** */
-    private Rotor[] rotorArr;
+    private final int _pawls;
+    /** The available rotors, by name. */
+    private final Map<String, Rotor> _available;
+    /** The rotor in each slot, from the reflector to the fast rotor. */
+    private final Rotor[] _slots;
+    /** The setting of each slot. */
+    private final int[] _settings;
+    /** The ring setting of each slot. */
+    private final int[] _rings;
     /** plugboard. */
     private Permutation _plugboard;
     /** boolean condition. */
     private boolean cond = false;
+    /** The combined mapping of the rotors in slots 0 to _innerDepth - 1
+     *  at their current settings, valid only if _innerValid. */
+    private final int[] _inner;
+    /** True iff _inner reflects the current rotors and settings. */
+    private boolean _innerValid;
+    /** The number of slots, counting from the reflector, whose rotors
+     *  _inner combines: all but those that move on every keypress. */
+    private final int _innerDepth;
+    /** The offset() of the rotor in each slot. */
+    private final int[] _offsets;
+    /** Receives a report of each character I convert. */
+    private Tracer _tracer = Tracer.NONE;
+    /** The rotors from which _byteForward and _byteInverse were last
+     *  loaded, by slot, or null. */
+    private Rotor[] _byteSlots;
+    /** The permutation and inverse permutation tables of the rotor in
+     *  each slot, as bytes, for a byte alphabet. */
+    private byte[][] _byteForward, _byteInverse;
+    /** The plugboard's permutation table as bytes. */
+    private byte[] _bytePlugboard;
+    /** The combined mapping of my non-moving rotors as bytes: into them
+     *  from the right, off the reflector, and back out again. */
+    private byte[] _byteInner;
+    /** Scratch space for convertBytes. */
+    private byte[] _byteBuffer;
 }
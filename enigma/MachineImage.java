@@ -0,0 +1,179 @@
+package enigma;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Compiled machine configurations.  An image holds, in order:
+ *  MAGIC and VERSION; the alphabet; the numbers of rotor slots and
+ *  pawls; and the number of rotors followed by each rotor's name, kind
+ *  ('R', 'N', or 'M'), notch mask (one bit per alphabet index), and
+ *  forward and inverse permutation tables.  Counts are ints, characters
+ *  and table entries are chars, and strings are an int length followed
+ *  by their characters, all in big-endian order.  Reading an image
+ *  needs no parsing of cycle notation.
+ *  @author Manu John
+ */
+final class MachineImage {
+
+    /** First four bytes of every image: 0x89, which is not ASCII and
+     *  cannot start a UTF-8 character, followed by "EIM" in ASCII, so
+     *  that no text configuration starts like an image. */
+    static final int MAGIC = 0x8945494d;
+
+    /** Version of the image format. */
+    static final int VERSION = 1;
+
+    /** Not instantiable. */
+    private MachineImage() {
+    }
+
+    /** Return true iff CONTENTS start like an image. */
+    static boolean isImage(byte[] contents) {
+        return contents.length >= Integer.BYTES
+            && ByteBuffer.wrap(contents).getInt() == MAGIC;
+    }
+
+    /** Return an image of a machine with alphabet ALPHA, NUMROTORS rotor
+     *  slots, NUMPAWLS pawls, and the available rotors ROTORS, which
+     *  must all use ALPHA.  The image occupies the buffer from its start
+     *  to its limit. */
+    static ByteBuffer write(Alphabet alpha, int numRotors, int numPawls,
+                            List<Rotor> rotors) {
+        int n = alpha.size();
+        if (n > Character.MAX_VALUE + 1) {
+            throw error("alphabet is too large for a machine image");
+        }
+        int maskSize = (n + Byte.SIZE - 1) / Byte.SIZE;
+        int size = 6 * Integer.BYTES + n * Character.BYTES;
+        for (Rotor rotor : rotors) {
+            size += Integer.BYTES + rotor.name().length() * Character.BYTES
+                + 1 + maskSize + 2 * n * Character.BYTES;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION);
+        putString(out, alpha.getSeq());
+        out.putInt(numRotors).putInt(numPawls).putInt(rotors.size());
+        byte[] mask = new byte[maskSize];
+        for (Rotor rotor : rotors) {
+            if (rotor.alphabet() != alpha) {
+                throw error("rotor %s has a different alphabet",
+                            rotor.name());
+            }
+            putString(out, rotor.name());
+            out.put(rotor.reflecting() ? (byte) 'R'
+                    : rotor.rotates() ? (byte) 'M' : (byte) 'N');
+            for (int k = 0; k < n; k += 1) {
+                if (rotor.atNotch(k)) {
+                    mask[k / Byte.SIZE] |= 1 << (k % Byte.SIZE);
+                } else {
+                    mask[k / Byte.SIZE] &= ~(1 << (k % Byte.SIZE));
+                }
+            }
+            out.put(mask);
+            Permutation perm = rotor.permutation();
+            for (int k = 0; k < n; k += 1) {
+                out.putChar((char) perm.permute(k));
+            }
+            for (int k = 0; k < n; k += 1) {
+                out.putChar((char) perm.invert(k));
+            }
+        }
+        return out.flip();
+    }
+
+    /** Return a new machine from the image in IMAGE, from its position
+     *  to its limit.  The position of IMAGE is unchanged. */
+    static Machine read(ByteBuffer image) {
+        ByteBuffer in = image.duplicate();
+        try {
+            if (in.getInt() != MAGIC) {
+                throw error("not a machine image");
+            }
+            if (in.getInt() != VERSION) {
+                throw error("unsupported machine image version");
+            }
+            Alphabet alpha = Alphabet.of(getString(in));
+            int n = alpha.size();
+            int numRotors = in.getInt(), numPawls = in.getInt();
+            int count = in.getInt();
+            if (count < 0 || count > in.remaining()) {
+                throw error("corrupt machine image");
+            }
+            List<Rotor> rotors = new ArrayList<>(count);
+            byte[] mask = new byte[(n + Byte.SIZE - 1) / Byte.SIZE];
+            for (int i = 0; i < count; i += 1) {
+                String name = getString(in);
+                byte kind = in.get();
+                in.get(mask);
+                Permutation perm =
+                    new Permutation(alpha, getTable(in, n), getTable(in, n));
+                switch (kind) {
+                case 'R':
+                    rotors.add(new Reflector(name, perm));
+                    break;
+                case 'N':
+                    rotors.add(new FixedRotor(name, perm));
+                    break;
+                case 'M':
+                    rotors.add(new MovingRotor(name, perm,
+                                               notches(alpha, mask)));
+                    break;
+                default:
+                    throw error("corrupt machine image");
+                }
+            }
+            if (in.hasRemaining()) {
+                throw error("corrupt machine image");
+            }
+            return new Machine(alpha, numRotors, numPawls, rotors);
+        } catch (BufferUnderflowException excp) {
+            throw error("truncated machine image");
+        }
+    }
+
+    /** Write S to OUT as its length followed by its characters. */
+    private static void putString(ByteBuffer out, String s) {
+        out.putInt(s.length());
+        for (int i = 0; i < s.length(); i += 1) {
+            out.putChar(s.charAt(i));
+        }
+    }
+
+    /** Return the string written by putString that is next in IN. */
+    private static String getString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0 || len > in.remaining() / Character.BYTES) {
+            throw error("corrupt machine image");
+        }
+        char[] chars = new char[len];
+        in.asCharBuffer().get(chars);
+        in.position(in.position() + len * Character.BYTES);
+        return new String(chars);
+    }
+
+    /** Return the table of N chars that is next in IN, as ints. */
+    private static int[] getTable(ByteBuffer in, int n) {
+        int[] result = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            result[k] = in.getChar();
+        }
+        return result;
+    }
+
+    /** Return the characters of ALPHA whose bits are set in MASK. */
+    private static String notches(Alphabet alpha, byte[] mask) {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < alpha.size(); k += 1) {
+            if ((mask[k / Byte.SIZE] & (1 << (k % Byte.SIZE))) != 0) {
+                result.appendCodePoint(alpha.codePoint(k));
+            }
+        }
+        return result.toString();
+    }
+
+}
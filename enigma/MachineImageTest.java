@@ -0,0 +1,85 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the MachineImage class.
+ *  @author
+ */
+public class MachineImageTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** A small configuration. */
+    private static final String CONFIG =
+        "ABCDEF 3 1 R R (AB) (CD) (EF) N N (ABC)(DE) M MAD (AF) (BCDE)";
+
+    /** Return MACH after inserting rotors R, N, and M at setting "BC",
+     *  with a plugboard that swaps A and C. */
+    private Machine setUp(Machine mach) {
+        mach.insertRotors(new String[] { "R", "N", "M" });
+        mach.setRotors("BC");
+        mach.setPlugboard(new Permutation("(AC)", mach.alphabet()));
+        return mach;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        ConfigParser parser = new ConfigParser(CONFIG);
+        Machine original = setUp(parser.parse());
+        ByteBuffer image =
+            MachineImage.write(parser.alphabet(), parser.numRotors(),
+                               parser.numPawls(), parser.rotors());
+        byte[] bytes = new byte[image.remaining()];
+        image.get(bytes);
+        assertTrue(MachineImage.isImage(bytes));
+        Machine loaded = setUp(MachineImage.read(ByteBuffer.wrap(bytes)));
+        assertEquals("AD", loaded.getRotor(2).notches());
+        assertEquals(original.convert("ABCDEFABCDEFABCDEF"),
+                     loaded.convert("ABCDEFABCDEFABCDEF"));
+    }
+
+    @Test
+    public void testTextLikeMagic() {
+        String config = "ENIMABCDFGHJKLOPQRSTUVWXYZ 3 1"
+            + " R R (EN) (IM) (AB) (CD) (FG) (HJ) (KL) (OP) (QR) (ST)"
+            + " (UV) (WX) (YZ) N N (ENI) M MA (ENIMA)";
+        assertFalse(MachineImage.isImage(config.getBytes()));
+        Machine mach = new ConfigParser(config).parse();
+        mach.insertRotors(new String[] { "R", "N", "M" });
+        mach.setRotors("EN");
+        mach.setPlugboard(new Permutation("", mach.alphabet()));
+        assertEquals(5, mach.convert("ENIMA").length());
+    }
+
+    @Test
+    public void testCorrupt() {
+        ConfigParser parser = new ConfigParser(CONFIG);
+        parser.parse();
+        ByteBuffer image =
+            MachineImage.write(parser.alphabet(), parser.numRotors(),
+                               parser.numPawls(), parser.rotors());
+        assertFalse(MachineImage.isImage(CONFIG.getBytes()));
+        image.limit(image.limit() - 1);
+        try {
+            MachineImage.read(image);
+            fail("read a truncated image");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        image.limit(image.capacity()).put(image.limit() - 1, (byte) 7);
+        try {
+            MachineImage.read(image);
+            fail("read a corrupt image");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+}
@@ -1,6 +1,15 @@
 package enigma;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -78,6 +87,312 @@ public class MachineTest {
                 mach.convert("FROMHISSHOULDERHIAWATHA"));
     }
 
+    @Test
+    public void testConvertArray() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        char[] in = "..FROM HIS SHOULDER\tHIAWATHA..".toCharArray();
+        char[] out = new char[in.length];
+        int n = mach.convert(in, 2, in.length - 4, out, 1);
+        assertEquals(23, n);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", new String(out, 1, n));
+    }
+
+    @Test
+    public void testConvertBuffers() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        CharBuffer out = CharBuffer.allocate(10);
+        CharBuffer in = CharBuffer.wrap("FROM HISSHOULD");
+        assertEquals(10, mach.convert(in, out));
+        assertEquals("QVPQSOKOIL", out.flip().toString());
+        assertEquals("ULD", in.toString());
+        ByteBuffer bytes = ByteBuffer.allocateDirect(13);
+        assertEquals(13, mach.convert(ByteBuffer.wrap(
+            "ULD ERHIAWATHA".getBytes(StandardCharsets.US_ASCII)), bytes));
+        assertEquals("PUBKJZPISFXDW",
+                     StandardCharsets.US_ASCII.decode(bytes.flip())
+                     .toString());
+    }
+
+    @Test
+    public void testConvertMapped() throws IOException {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        Path in = Files.createTempFile("enigma", ".in");
+        Path out = Files.createTempFile("enigma", ".out");
+        try {
+            Files.write(in, "FROM HIS SHOULDER\nHIAWATHA"
+                        .getBytes(StandardCharsets.US_ASCII));
+            assertEquals(23, MappedFiles.convert(mach, in, out));
+            assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                         new String(Files.readAllBytes(out),
+                                    StandardCharsets.US_ASCII));
+            Writer writer = new MappedWriter(out, StandardCharsets.UTF_8);
+            writer.write("ABC \u00c9");
+            writer.close();
+            assertEquals("ABC \u00c9",
+                         new String(Files.readAllBytes(out),
+                                    StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testConvertBadChar() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("", AZ));
+        mach.convert("HELLO world");
+    }
+
+    @Test
+    public void testConvertBytes() {
+        Machine mach = new ConfigParser(TestUtils.BYTE_CONFIG).parse();
+        Main.configure(mach, "* R N M1 M2 0a7e80 01ff00 (2829) (0a0d)");
+        Machine check = mach.copy();
+        byte[] in = new byte[5000];
+        new Random(3).nextBytes(in);
+        byte[] out = new byte[in.length];
+        mach.convert(in, 0, 2000, out, 0);
+        ByteBuffer rest = ByteBuffer.allocateDirect(in.length - 2000);
+        assertEquals(rest.capacity(),
+                     mach.convert(ByteBuffer.wrap(in, 2000, rest.capacity()),
+                                  rest));
+        rest.flip().get(out, 2000, rest.capacity());
+        for (int i = 0; i < in.length; i += 1) {
+            assertEquals(check.convert(in[i] & 0xff), out[i] & 0xff);
+        }
+        assertEquals(check.setting(3), mach.setting(3));
+        assertEquals(check.setting(2), mach.setting(2));
+
+        Machine back = new ConfigParser(TestUtils.BYTE_CONFIG).parse();
+        Main.configure(back, "* R N M1 M2 0a7e80 01ff00 (2829) (0a0d)");
+        back.convert(out, 0, out.length, out, 0);
+        assertArrayEquals(in, out);
+    }
+
+    @Test
+    public void testConfigureWhitespace() {
+        Machine mach = new ConfigParser(TestUtils.BYTE_CONFIG).parse();
+        Main.configure(mach, " *  R N M1 M2\t0a7e80  01ff00 (2829)  ");
+        Machine check = new ConfigParser(TestUtils.BYTE_CONFIG).parse();
+        Main.configure(check, "* R N M1 M2 0a7e80 01ff00 (2829)");
+        assertEquals(check.positionAfter(0), mach.positionAfter(0));
+        assertEquals(check.convert(0x28), mach.convert(0x28));
+        try {
+            Main.configure(mach, "   ");
+            fail("configured from a blank settings line");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testParallelism() {
+        assertEquals(3, Main.parallelism("3"));
+        for (String n : new String[] { "0", "00", "99999999999", "" }) {
+            try {
+                Main.parallelism(n);
+                fail("accepted --parallel=" + n);
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void testLargeAlphabet() {
+        String config = TestUtils.largeConfig(new Random(5));
+        Machine mach = new ConfigParser(config).parse();
+        Alphabet alpha = mach.alphabet();
+        assertEquals(TestUtils.LARGE_BMP + TestUtils.LARGE_SUPPLEMENTARY,
+                     alpha.size());
+        assertFalse(alpha.isBmp());
+        int first = alpha.codePoint(0);
+        int last = alpha.codePoint(alpha.size() - 1);
+        String ends = new String(Character.toChars(first))
+            + new String(Character.toChars(last));
+        String settings = "* R N M " + ends + " (" + ends + ")";
+        Main.configure(mach, settings);
+        Machine check = mach.copy();
+
+        Random random = new Random(9);
+        int[] msg = new int[5000];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = random.nextInt(alpha.size());
+            text.appendCodePoint(alpha.codePoint(msg[i]));
+            if (i % 7 == 0) {
+                text.append(' ');
+            }
+        }
+        String converted = mach.convert(text.toString());
+        int[] result = converted.codePoints().toArray();
+        assertEquals(msg.length, result.length);
+        for (int i = 0; i < msg.length; i += 1) {
+            assertEquals(alpha.codePoint(check.convert(msg[i])), result[i]);
+        }
+        assertEquals(check.positionAfter(0), mach.positionAfter(0));
+
+        Machine back = new ConfigParser(config).parse();
+        Main.configure(back, settings);
+        CharBuffer out = CharBuffer.allocate(2 * converted.length());
+        back.convert(CharBuffer.wrap(converted), out);
+        assertEquals(text.toString().replace(" ", ""),
+                     out.flip().toString());
+    }
+
+    /** Return the settings of the non-reflector rotors of MACH. */
+    private String settings(Machine mach) {
+        String result = "";
+        for (int i = 1; i < mach.numRotors(); i += 1) {
+            result += AZ.toChar(mach.setting(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void testDoubleStep() {
+        HashMap<String, Rotor> rotors = new HashMap<>();
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        rotors.put("B", new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        rotors.put("Beta", new FixedRotor("Beta",
+                new Permutation(nav.get("Beta"), AZ)));
+        rotors.put("I", new MovingRotor("I",
+                new Permutation(nav.get("I"), AZ), "Q"));
+        rotors.put("II", new MovingRotor("II",
+                new Permutation(nav.get("II"), AZ), "E"));
+        rotors.put("III", new MovingRotor("III",
+                new Permutation(nav.get("III"), AZ), "V"));
+        Machine mach = new Machine(AZ, 5, 3, rotors.values());
+        mach.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        mach.setRotors("AADU");
+        mach.setPlugboard(new Permutation("", AZ));
+        String[] expected = { "AADV", "AAEW", "ABFX", "ABFY" };
+        for (String setting : expected) {
+            mach.convert(0);
+            assertEquals(setting, settings(mach));
+        }
+    }
+
+    /** Check that MACH, at its current settings, predicts the settings
+     *  it reaches after each of N keypresses, then make them. */
+    private void checkSeek(Machine mach, int n) {
+        String[] predicted = new String[n + 1];
+        for (int k = 0; k <= n; k += 1) {
+            predicted[k] = mach.positionAfter(k);
+        }
+        for (int k = 0; k <= n; k += 1) {
+            assertEquals("after " + k, predicted[k], settings(mach));
+            mach.convert(0);
+        }
+    }
+
+    @Test
+    public void testSeek() {
+        Alphabet ab = new Alphabet("ABCDEF");
+        HashMap<String, Rotor> rotors = new HashMap<>();
+        rotors.put("R", new Reflector("R", new Permutation("(AB) (CD) (EF)",
+                                                           ab)));
+        rotors.put("F", new FixedRotor("F", new Permutation("(ACE)", ab)));
+        rotors.put("V", new MovingRotor("V", new Permutation("(AF)", ab),
+                                        "F"));
+        rotors.put("W", new MovingRotor("W", new Permutation("(ABE)", ab),
+                                        "B"));
+        rotors.put("X", new MovingRotor("X", new Permutation("(BD)", ab),
+                                        "CD"));
+        rotors.put("Y", new MovingRotor("Y", new Permutation("(AE)", ab),
+                                        ""));
+        rotors.put("Z", new MovingRotor("Z", new Permutation("(CDE)", ab),
+                                        "EA"));
+        Machine mach = new Machine(ab, 6, 4, rotors.values());
+        mach.setPlugboard(new Permutation("", ab));
+        mach.insertRotors(new String[] { "R", "F", "W", "X", "V", "Z" });
+        mach.setRotors("ABACE");
+        checkSeek(mach, 1500);
+        mach.insertRotors(new String[] { "R", "F", "X", "Z", "Y", "V" });
+        mach.setRotors("EDFBA");
+        checkSeek(mach, 1500);
+        mach.insertRotors(new String[] { "R", "F", "Z", "Y", "X", "V" });
+        mach.setRotors("AEDBC");
+        checkSeek(mach, 1500);
+
+        mach = mach1();
+        String after = mach.positionAfter(123456789L);
+        mach.seek(123456789L);
+        assertEquals(after, settings(mach));
+    }
+
+    @Test
+    public void testParallelConvert() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        Machine copy = mach.copy();
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 300000; i += 1) {
+            msg.append(TestUtils.UPPER_STRING.charAt(i % 7 * i % 26));
+            if (i % 7 == 0) {
+                msg.append(' ');
+            }
+        }
+        String expected = mach.convert(msg.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        assertEquals(expected, copy.convert(msg.toString(), pool));
+        assertEquals(settings(mach), settings(copy));
+        assertEquals(mach.convert("FROMHISSHOULDER"),
+                     copy.convert("FROMHISSHOULDER"));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSharedRotors() {
+        Machine m1 = new Machine(AZ, 5, 3, ROTORS.values());
+        Machine m2 = new Machine(AZ, 5, 3, ROTORS.values());
+        m1.insertRotors(ROTORS1);
+        m2.insertRotors(ROTORS1);
+        m1.setRotors(SETTING1);
+        m2.setRotors("BQCV");
+        m2.setRing("ZZZZ");
+        m1.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        m2.setPlugboard(new Permutation("", AZ));
+        Machine c1 = m1.copy(), c2 = m2.copy();
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        String e1 = c1.convert(msg), e2 = c2.convert(msg);
+        String r1 = "", r2 = "";
+        for (char ch : msg.toCharArray()) {
+            r1 += m1.convert("" + ch);
+            r2 += m2.convert("" + ch);
+        }
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", r1);
+        assertEquals(e1, r1);
+        assertEquals(e2, r2);
+        assertEquals(0, m1.ringSetting(2));
+        assertEquals(25, m2.ringSetting(2));
+        assertSame(m1.getRotor(4), m2.getRotor(4));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRotorUsedTwice() {
+        Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "III" });
+    }
+
+    @Test
+    public void testTrace() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(YF) (HZ)", AZ));
+        StringBuilder out = new StringBuilder();
+        RingTracer tracer = new RingTracer(AZ, out);
+        mach.setTracer(tracer);
+        assertEquals(25, mach.convert(24));
+        tracer.flush();
+        assertEquals("[AXLF] Y -> F -> I -> V -> J -> W -> H -> X -> Z -> "
+                     + "J -> H -> Z" + System.lineSeparator(),
+                     out.toString());
+    }
+
     @Test
     public void advanceRotorTest() {
         ROTORS2.put("B", new Reflector("B",
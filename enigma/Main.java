@@ -1,13 +1,24 @@
 package enigma;
 
-import java.io.File;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.util.Collection;
-import java.util.List;
-import java.util.Scanner;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import ucb.util.CommandArgs;
 
@@ -26,18 +37,122 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.  With --parallel, long messages are
+     *  converted on all available processors, or on N of them with
+     *  --parallel=N.  With --mmap, which requires both INPUT and OUTPUT,
+     *  those files are read and written through memory mappings.
+     *  CONFIG may be a machine image made by --compile=IMAGE, which
+     *  compiles CONFIG into the file IMAGE instead of processing any
+     *  messages, keeping only the rotors listed with --select=R1,R2,...
+     *  if present.  With --serve=ADDRESS, runs a Server for the machine in
+     *  CONFIG on ADDRESS, a loopback port number or a UNIX-domain socket
+     *  name, until killed.  --settings-cache=N sets how many distinct
+     *  settings lines are remembered, so that repeating one is cheap.
+     *  With --search[=K], instead of converting INPUT, prints the K (by
+     *  default 10) rotor choices and settings under which its messages
+     *  look most like natural language, trying all ring settings too if
+     *  --rings is given; see KeySearch.  With --crib=CRIB, prints the
+     *  settings at which a Bombe finds CRIB consistent with INPUT at
+     *  position --crib-offset (by default 0); see Bombe.  With
+     *  --plugboard=SAMPLE, INPUT must start with a settings line; prints
+     *  it with the plugboard that makes the rest of INPUT decrypt most
+     *  like the text in file SAMPLE, found from --restarts (by default
+     *  16) starting points with at most --max-pairs (by default 10)
+     *  pairs; see PlugboardSolver.  With --compile-atlas=ATLAS, writes to
+     *  the file ATLAS a StateAtlas of the machine set up by the settings
+     *  line that starts INPUT, instead of processing any messages.  With
+     *  --atlas=ATLAS, messages under settings lines that ATLAS matches
+     *  are converted through a shared mapping of it.  With
+     *  --bytes=SETTINGS, the bytes of INPUT are converted one for one by
+     *  the machine set up by the settings line SETTINGS and written to
+     *  OUTPUT with no line or group formatting; see
+     *  Machine.convert(ByteBuffer, ByteBuffer).  A CONFIG whose alphabet
+     *  is (BYTES) describes a machine of all 256 byte values. */
     public static void main(String... args) {
         try {
             CommandArgs options =
-                new CommandArgs("--verbose --=(.*){1,3}", args);
-            if (!options.ok()) {
+                new CommandArgs("--verbose --parallel=(\\d*) --mmap "
+                                + "--compile=(.+) --select=(.+) "
+                                + "--serve=(.+) --settings-cache=(\\d+) "
+                                + "--search=(\\d*) --rings "
+                                + "--crib=(.+) --crib-offset=(\\d+) "
+                                + "--plugboard=(.+) --restarts=(\\d+) "
+                                + "--max-pairs=(\\d+) "
+                                + "--compile-atlas=(.+) --atlas=(.+) "
+                                + "--bytes=(.+) "
+                                + "--=(.*){1,3}", args);
+            if (!options.ok()
+                || (options.contains("--compile")
+                    || options.contains("--serve"))
+                   && options.get("--").size() != 1
+                || options.contains("--compile-atlas")
+                   && options.get("--").size() != 2) {
                 throw error("Usage: java enigma.Main [--verbose] "
-                            + "[INPUT [OUTPUT]]");
+                            + "[--parallel[=N]] [--mmap] "
+                            + "[--settings-cache=N] [--atlas=ATLAS] "
+                            + "CONFIG [INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main --compile=IMAGE "
+                            + "[--select=ROTOR,...] CONFIG%n"
+                            + "       java enigma.Main --serve=ADDRESS "
+                            + "[--settings-cache=N] CONFIG%n"
+                            + "       java enigma.Main --search[=K] "
+                            + "[--rings] [--parallel[=N]] CONFIG "
+                            + "[INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main --crib=CRIB "
+                            + "[--crib-offset=N] [--parallel[=N]] CONFIG "
+                            + "[INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main --plugboard=SAMPLE "
+                            + "[--restarts=N] [--max-pairs=N] "
+                            + "[--parallel[=N]] CONFIG [INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main "
+                            + "--compile-atlas=ATLAS CONFIG INPUT%n"
+                            + "       java enigma.Main --bytes=SETTINGS "
+                            + "[--mmap] CONFIG [INPUT [OUTPUT]]");
+            }
+            SettingsCache cache =
+                new SettingsCache(options.contains("--settings-cache")
+                                  ? Integer.parseInt(
+                                      options.getFirst("--settings-cache"))
+                                  : DEFAULT_SETTINGS_CACHE_SIZE);
+            if (options.contains("--serve")) {
+                serve(options.getFirst("--"), options.getFirst("--serve"),
+                      cache);
+                return;
+            }
+            if (options.contains("--bytes")) {
+                convertBytes(options.getFirst("--"),
+                             options.getFirst("--bytes"), options.get("--"),
+                             options.contains("--mmap"));
+                return;
+            }
+            if (options.contains("--compile")) {
+                compile(options.getFirst("--"),
+                        options.getFirst("--compile"),
+                        options.getFirst("--select"));
+                return;
             }
 
-            _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            Main main = new Main(options.get("--"),
+                                 options.contains("--mmap"));
+            main._verbose = options.contains("--verbose");
+            main._settingsCache = cache;
+            if (options.contains("--parallel")) {
+                String n = options.getFirst("--parallel");
+                int threads =
+                    n == null || n.isEmpty() ? 0 : parallelism(n);
+                if (!main._verbose) {
+                    main._pool = threads == 0 ? ForkJoinPool.commonPool()
+                        : new ForkJoinPool(threads);
+                }
+            }
+            try {
+                main.dispatch(options);
+            } finally {
+                if (main._pool != null
+                    && main._pool != ForkJoinPool.commonPool()) {
+                    main._pool.shutdown();
+                }
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -45,135 +160,539 @@ public final class Main {
         System.exit(1);
     }
 
+    /** Return the thread count N given as --parallel=N, which must be a
+     *  positive int. */
+    static int parallelism(String n) {
+        int result;
+        try {
+            result = Integer.parseInt(n);
+        } catch (NumberFormatException excp) {
+            result = 0;
+        }
+        if (result <= 0) {
+            throw error("--parallel needs a positive thread count: %s", n);
+        }
+        return result;
+    }
+
+    /** Run the conversion, search, or compilation selected by OPTIONS on
+     *  my files. */
+    private void dispatch(CommandArgs options) {
+        if (options.contains("--atlas")) {
+            _atlas = StateAtlas.map(options.getFirst("--atlas"));
+        }
+        if (options.contains("--compile-atlas")) {
+            compileAtlas(options.getFirst("--compile-atlas"));
+        } else if (options.contains("--plugboard")) {
+            String restarts = options.getFirst("--restarts");
+            String pairs = options.getFirst("--max-pairs");
+            solvePlugboard(options.getFirst("--plugboard"),
+                           restarts == null ? DEFAULT_RESTARTS
+                           : Integer.parseInt(restarts),
+                           pairs == null ? DEFAULT_MAX_PAIRS
+                           : Integer.parseInt(pairs));
+        } else if (options.contains("--crib")) {
+            String offset = options.getFirst("--crib-offset");
+            bombe(options.getFirst("--crib"),
+                  offset == null ? 0 : Integer.parseInt(offset));
+        } else if (options.contains("--search")) {
+            String k = options.getFirst("--search");
+            search(k == null || k.isEmpty() ? DEFAULT_SEARCH_COUNT
+                   : Integer.parseInt(k),
+                   options.contains("--rings"));
+        } else {
+            process();
+        }
+    }
+
     /** Open the necessary files for non-option arguments ARGS (see comment
-      *  on main). */
-    Main(List<String> args) {
-        _config = getInput(args.get(0));
-        if (args.size() > 1) {
-            _input = getInput(args.get(1));
+      *  on main), mapping the input and output files into memory if
+      *  MAPPED. */
+    Main(List<String> args, boolean mapped) {
+        openConfig(args.get(0));
+        if (mapped) {
+            if (args.size() < 3) {
+                throw error("--mmap needs input and output files");
+            }
+            _input = getMappedMessages(args.get(1));
+            _output = getMappedOutput(args.get(2));
         } else {
-            _input = new Scanner(System.in);
+            if (args.size() > 1) {
+                _input = getMessages(args.get(1));
+            } else {
+                _input = new LineReader(new FileInputStream(FileDescriptor.in)
+                                        .getChannel(),
+                                        Charset.defaultCharset());
+            }
+
+            if (args.size() > 2) {
+                _output = getOutput(args.get(2));
+            } else {
+                _output = getOutput(new FileOutputStream(FileDescriptor.out)
+                                    .getChannel());
+            }
         }
+        _formatter = new GroupWriter(_output);
+    }
+
+    /** A Main that reads its configuration from CONFIG and messages from
+     *  INPUT, and writes its results to OUTPUT. */
+    Main(ConfigParser config, LineReader input, PrintWriter output) {
+        _config = config;
+        _input = input;
+        _output = output;
+        _formatter = new GroupWriter(_output);
+    }
 
-        if (args.size() > 2) {
-            _output = getOutput(args.get(2));
+    /** Read the configuration or machine image in the file named NAME
+     *  into _config or _image. */
+    private void openConfig(String name) {
+        byte[] contents = readFile(name);
+        if (MachineImage.isImage(contents)) {
+            _image = ByteBuffer.wrap(contents);
         } else {
-            _output = System.out;
+            _config = new ConfigParser(new String(contents,
+                                                  Charset.defaultCharset()));
+        }
+    }
+
+    /** Return the machine configured by the configuration or machine
+     *  image in the file named NAME. */
+    private static Machine loadMachine(String name) {
+        byte[] contents = readFile(name);
+        if (MachineImage.isImage(contents)) {
+            return MachineImage.read(ByteBuffer.wrap(contents));
+        }
+        return new ConfigParser(new String(contents,
+                                           Charset.defaultCharset())).parse();
+    }
+
+    /** Serve clients on ADDRESS (see Server.listen) with copies of the
+     *  machine configured in the file named CONFIG, until killed.  All
+     *  clients share CACHE. */
+    private static void serve(String config, String address,
+                              SettingsCache cache) {
+        Server server = new Server(loadMachine(config), cache,
+                                   Server.listen(address));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.serve();
+    }
+
+    /** Convert the bytes of the file named by ARGS[1], or of the standard
+     *  input if there is no ARGS[1], with the machine configured in the
+     *  file named CONFIG and set up by the settings line SETTINGS,
+     *  writing the results to the file named by ARGS[2], or to the
+     *  standard output.  The files are converted through memory mappings
+     *  if MAPPED. */
+    private static void convertBytes(String config, String settings,
+                                     List<String> args, boolean mapped) {
+        Machine m = loadMachine(config);
+        configure(m, settings);
+        if (mapped) {
+            if (args.size() < 3) {
+                throw error("--mmap needs input and output files");
+            }
+            MappedFiles.convert(m, Paths.get(args.get(1)),
+                                Paths.get(args.get(2)));
+            return;
+        }
+        try (ReadableByteChannel in = args.size() > 1
+                 ? FileChannel.open(Paths.get(args.get(1)))
+                 : new FileInputStream(FileDescriptor.in).getChannel();
+             WritableByteChannel out = args.size() > 2
+                 ? FileChannel.open(Paths.get(args.get(2)),
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.WRITE,
+                                    StandardOpenOption.TRUNCATE_EXISTING)
+                 : new FileOutputStream(FileDescriptor.out).getChannel()) {
+            ByteBuffer from = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+            ByteBuffer to = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+            while (in.read(from) >= 0 || from.position() > 0) {
+                from.flip();
+                m.convert(from, to);
+                from.compact();
+                to.flip();
+                while (to.hasRemaining()) {
+                    out.write(to);
+                }
+                to.clear();
+            }
+        } catch (IOException excp) {
+            throw error("could not convert bytes: %s", excp.getMessage());
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Return the contents of the file named NAME. */
+    private static byte[] readFile(String name) {
         try {
-            return new Scanner(new File(name));
+            return Files.readAllBytes(Paths.get(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Write an image of the machine configured in the file named CONFIG
+     *  to the file named IMAGE.  The image has only the rotors named in
+     *  SELECTION, a comma-separated list, in that order, or all of them
+     *  if SELECTION is null. */
+    private static void compile(String config, String image,
+                                String selection) {
+        ConfigParser parser =
+            new ConfigParser(new String(readFile(config),
+                                        Charset.defaultCharset()));
+        parser.parse();
+        List<Rotor> rotors = parser.rotors();
+        if (selection != null) {
+            rotors = new ArrayList<>();
+            for (String name : selection.split(",")) {
+                Rotor found = null;
+                for (Rotor rotor : parser.rotors()) {
+                    if (rotor.name().equals(name)) {
+                        found = rotor;
+                    }
+                }
+                if (found == null) {
+                    throw error("no rotor named %s in %s", name, config);
+                }
+                rotors.add(found);
+            }
+        }
+        ByteBuffer bytes = MachineImage.write(parser.alphabet(),
+                                              parser.numRotors(),
+                                              parser.numPawls(), rotors);
+        try (FileChannel out = FileChannel.open(Paths.get(image),
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.
+                                                TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", image);
+        }
+    }
+
+    /** Return a LineReader reading from the file named NAME. */
+    private LineReader getMessages(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new LineReader(FileChannel.open(Paths.get(name)),
+                                  Charset.defaultCharset());
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
+    /** Return a LineReader reading from a mapping of the file named
+     *  NAME. */
+    private LineReader getMappedMessages(String name) {
+        try {
+            return new LineReader(Paths.get(name), Charset.defaultCharset());
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a PrintWriter writing to a mapping of the file named
+     *  NAME. */
+    private PrintWriter getMappedOutput(String name) {
+        try {
+            return new PrintWriter(new MappedWriter(Paths.get(name),
+                                                    Charset.defaultCharset()));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a PrintWriter writing to the file named NAME. */
+    private PrintWriter getOutput(String name) {
+        try {
+            return getOutput(FileChannel.open(Paths.get(name),
+                                              StandardOpenOption.CREATE,
+                                              StandardOpenOption.WRITE,
+                                              StandardOpenOption.
+                                              TRUNCATE_EXISTING));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a PrintWriter that writes to CHANNEL through a large buffer,
+     *  which is emptied only when flushed or full. */
+    static PrintWriter getOutput(WritableByteChannel channel) {
+        return new PrintWriter(new BufferedWriter(
+            Channels.newWriter(channel, Charset.defaultCharset().newEncoder(),
+                               -1), OUTPUT_BUFFER_SIZE));
+    }
+
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
-    private void process() {
-        Machine m;
-        if (!_input.hasNextLine()) {
+    void process() {
+        if (!_input.next()) {
             throw new EnigmaException("empty enigma input file");
         }
+        try {
+            process(readConfig());
+        } finally {
+            _output.close();
+        }
+        if (_output.checkError()) {
+            throw error("could not write output");
+        }
+    }
 
-        m = readConfig();
-        while (_input.hasNextLine()) {
-            String f = _input.nextLine();
-            f = f.replaceAll("\\s+", " ");
-            f = f.trim();
-            if (!f.startsWith("*")) {
-                if (m == null) {
-                    throw new EnigmaException("empty machine!");
-                } else if (!m.getCond()) {
-                    throw new EnigmaException("empty config file");
+    /** Apply M to the messages in _input, starting with its current
+     *  line, and send the results to _output, which is flushed but left
+     *  open. */
+    void process(Machine m) {
+        _alphabet = m.alphabet();
+        RingTracer tracer = null;
+        if (_verbose) {
+            tracer = new RingTracer(_alphabet, System.err);
+            m.setTracer(tracer);
+        }
+        try {
+            do {
+                if (!_input.startsWith('*')) {
+                    if (m == null) {
+                        throw new EnigmaException("empty machine!");
+                    } else if (!m.getCond()) {
+                        throw new EnigmaException("empty config file");
+                    }
+                    printMessageLine(m);
+                } else {
+                    String settingLine = _input.toString();
+                    setUp(m, settingLine);
+                    _atlasState = _atlas != null && !_verbose
+                        && _alphabet.isBmp() && _atlas.matches(m)
+                        ? _atlas.state(m) : -1;
                 }
-                printMessageLine(m.convert(f));
-            } else {
-                String settingLine = f;
-                setUp(m, settingLine);
+                if (!_input.buffered()) {
+                    _formatter.flush();
+                }
+            } while (_input.next());
+        } finally {
+            if (tracer != null) {
+                tracer.flush();
             }
+            _formatter.flush();
         }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** Print to _output the COUNT best candidates found by a KeySearch
+     *  of the messages in _input, which searches ring settings too if
+     *  RINGS.  Settings lines in _input are ignored, and the plugboard is
+     *  taken to be empty. */
+    void search(int count, boolean rings) {
+        Machine m = readConfig();
+        KeySearch search =
+            new KeySearch(m, new Permutation("", m.alphabet()), rings, count);
         try {
-            if (!_config.hasNext("[^*()]+")) {
-                throw new EnigmaException("no alphabet");
-            }
-            String str = _config.next();
-            _alphabet = new Alphabet(str);
-            if (!_config.hasNext("\\d")) {
-                throw new EnigmaException("no rotors");
-            }
-            _rotors = Integer.parseInt(_config.next());
-            if (!_config.hasNext("\\d")) {
-                throw new EnigmaException("no pawls");
+            for (KeyCandidate candidate
+                     : search.search(readCiphertext(m.alphabet()),
+                                     _pool == null ? ForkJoinPool.commonPool()
+                                     : _pool)) {
+                _output.println(candidate);
             }
-            _pawls = Integer.parseInt(_config.next());
-            _rotorBag = new ArrayList<>();
-            while (_config.hasNext()) {
-                _rotorBag.add(readRotor());
+        } finally {
+            _output.close();
+        }
+        if (_output.checkError()) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Print to _output the settings line of each stop of a Bombe that
+     *  tests the menu of CRIB placed at OFFSET in the messages in
+     *  _input.  Settings lines in _input are ignored, and whitespace in
+     *  CRIB is ignored. */
+    void bombe(String crib, int offset) {
+        Machine m = readConfig();
+        int[] cipher = readCiphertext(m.alphabet());
+        int[] plain = toIndices(crib.replaceAll("\\s", ""), m.alphabet());
+        Menu menu = new Menu(plain, cipher, offset, m.alphabet().size());
+        if (_verbose) {
+            System.err.printf("menu: %d edges, %d closures%n",
+                              menu.numEdges(), menu.closures());
+        }
+        try {
+            for (BombeStop stop
+                     : new Bombe(m, menu).search(
+                         _pool == null ? ForkJoinPool.commonPool() : _pool)) {
+                _output.println(stop);
             }
-            return new Machine(_alphabet, _rotors, _pawls, _rotorBag);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
+        } finally {
+            _output.close();
+        }
+        if (_output.checkError()) {
+            throw error("could not write output");
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Print to _output the settings line that starts _input, with its
+     *  plugboard replaced by the plugboard with at most MAXPAIRS pairs
+     *  that makes the rest of _input decrypt most like the text in file
+     *  SAMPLE, as found by a PlugboardSolver making RESTARTS restarts. */
+    void solvePlugboard(String sample, int restarts, int maxPairs) {
+        Machine m = readConfig();
+        _alphabet = m.alphabet();
+        if (!_input.next() || !_input.startsWith('*')) {
+            throw error("input must start with a settings line");
+        }
+        String settings = _input.toString();
+        setUp(m, settings);
+        int[] cipher = readCiphertext(_alphabet);
+        NgramModel model =
+            NgramModel.train(new String(readFile(sample),
+                                        Charset.defaultCharset()),
+                             _alphabet, NGRAM_ORDER);
+        PlugboardSolution best =
+            new PlugboardSolver(m, cipher, model, maxPairs, 0)
+            .solve(restarts,
+                   _pool == null ? ForkJoinPool.commonPool() : _pool);
+        if (_verbose) {
+            System.err.printf("score: %.3f%n", best.score());
+        }
+        String line = settings.split(" \\(", 2)[0];
         try {
-            if (!_config.hasNext()) {
-                throw new EnigmaException("does not have next for name");
+            _output.println(best.plugboard().isEmpty() ? line
+                            : line + " " + best.plugboard());
+        } finally {
+            _output.close();
+        }
+        if (_output.checkError()) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Return the letters of the messages in _input, without settings
+     *  lines or whitespace, as indices into ALPHA. */
+    private int[] readCiphertext(Alphabet alpha) {
+        int[] text = new int[1 << 10];
+        int n = 0;
+        while (_input.next()) {
+            if (_input.startsWith('*')) {
+                continue;
             }
-            String rotorName = _config.next();
-            if (!_config.hasNext()) {
-                throw new EnigmaException("does not have next for description");
+            char[] chars = _input.chars();
+            for (int i = 0; i < _input.length(); i++) {
+                if (chars[i] == ' ') {
+                    continue;
+                }
+                int c = alpha.toInt(chars[i]);
+                if (c < 0) {
+                    throw error("character %c is not in the alphabet",
+                                chars[i]);
+                }
+                if (n == text.length) {
+                    text = Arrays.copyOf(text, 2 * n);
+                }
+                text[n] = c;
+                n += 1;
             }
-            String rotorDescription = _config.next();
-            String rotorCycles = "";
+        }
+        return Arrays.copyOf(text, n);
+    }
 
-            while (_config.hasNext("(\\([" + _alphabet.getSeq() + "]+\\))+")) {
-                String currString = _config.next();
-                rotorCycles += currString;
+    /** Return the characters of S as indices into ALPHA. */
+    private static int[] toIndices(String s, Alphabet alpha) {
+        int[] result = new int[s.length()];
+        for (int i = 0; i < s.length(); i += 1) {
+            result[i] = alpha.toInt(s.charAt(i));
+            if (result[i] < 0) {
+                throw error("character %c is not in the alphabet",
+                            s.charAt(i));
             }
+        }
+        return result;
+    }
 
-            Permutation p = new Permutation(rotorCycles, _alphabet);
-            if (rotorDescription.charAt(0) == 'R') {
-                return new Reflector(rotorName, p);
-            } else if (rotorDescription.charAt(0) == 'N') {
-                return new FixedRotor(rotorName, p);
-            } else if (rotorDescription.charAt(0) == 'M') {
-                String rotorNotches = rotorDescription.substring(1);
-                return new MovingRotor(rotorName,
-                        p, rotorNotches);
-            } else {
-                throw new EnigmaException("wrong formatting");
+    /** Convert the current line of _input with M and print the result
+     *  in groups of five (except that the last group may have fewer
+     *  letters). */
+    private void printMessageLine(Machine m) {
+        int len = _input.length();
+        int room = _alphabet.isBmp() ? len : 2 * len;
+        if (_converted.length < room) {
+            _converted = new char[Math.max(room, 2 * _converted.length)];
+        }
+        int n;
+        if (_atlasState >= 0) {
+            n = convertWithAtlas(_input.chars(), len, _converted);
+        } else if (_pool == null) {
+            n = m.convert(_input.chars(), 0, len, _converted, 0);
+        } else {
+            n = m.convert(_input.chars(), 0, len, _converted, 0, _pool);
+        }
+        _formatter.write(_converted, 0, n);
+        _formatter.endLine();
+    }
+
+    /** Convert the LEN characters of IN, skipping whitespace, with _atlas
+     *  from state _atlasState, storing the results in OUT and leaving
+     *  _atlasState at the final state.  Returns the number of characters
+     *  stored. */
+    private int convertWithAtlas(char[] in, int len, char[] out) {
+        int state = _atlasState;
+        int n = 0;
+        for (int i = 0; i < len; i += 1) {
+            if (Character.isWhitespace(in[i])) {
+                continue;
+            }
+            int c = _alphabet.toInt(in[i]);
+            if (c < 0) {
+                throw error("character %c is not in the alphabet", in[i]);
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+            state = _atlas.next(state);
+            out[n] = _alphabet.toChar(_atlas.substitute(state, c));
+            n += 1;
         }
+        _atlasState = state;
+        return n;
+    }
+
+    /** Write to the file named ATLAS a StateAtlas of the machine set up
+     *  by the settings line that starts _input. */
+    void compileAtlas(String atlas) {
+        Machine m = readConfig();
+        _alphabet = m.alphabet();
+        try {
+            if (!_input.next() || !_input.startsWith('*')) {
+                throw error("input must start with a settings line");
+            }
+            setUp(m, _input.toString());
+            StateAtlas.build(m).write(atlas);
+        } finally {
+            _output.close();
+        }
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _config, or from the machine image _image. */
+    Machine readConfig() {
+        return _image != null ? MachineImage.read(_image) : _config.parse();
     }
 
     /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
+     *  which must have the format specified in the assignment, with its
+     *  whitespace normalized.  Settings lines seen before are looked up
+     *  in _settingsCache. */
     private void setUp(Machine M, String settings) {
-        String[] arr = settings.split("\\s");
+        Settings cached = _settingsCache.get(settings);
+        if (cached != null) {
+            M.setSettings(cached);
+            return;
+        }
+        configure(M, settings);
+        _settingsCache.put(settings, M.settings());
+    }
+
+    /** Set M according to SETTINGS, as setUp does, but without
+     *  consulting any cache.  The whitespace of SETTINGS need not be
+     *  normalized. */
+    static void configure(Machine M, String settings) {
+        String[] arr = words(settings);
         if (!arr[0].equals("*")) {
             throw new EnigmaException("forgot *");
         }
@@ -187,92 +706,107 @@ public final class Main {
             }
         }
 
+        if (storage != M.numRotors() + 1 && storage != M.numRotors() + 2) {
+            throw new EnigmaException("wrong arr length");
+        }
         String[] rotorNames = new String[M.numRotors()];
         System.arraycopy(arr, 1,
                 rotorNames, 0, rotorNames.length);
         M.insertRotors(rotorNames);
+        Alphabet alpha = M.alphabet();
         if (storage == M.numRotors() + 2) {
-            M.setRotors(arr[storage - 1]);
-            M.setRing(arr[storage]);
-        } else if (storage == M.numRotors() + 1) {
-            M.setRotors(arr[storage]);
+            M.setRotors(alpha.decode(arr[storage - 1]));
+            M.setRing(alpha.decode(arr[storage]));
         } else {
-            throw new EnigmaException("wrong arr length");
+            M.setRotors(alpha.decode(arr[storage]));
         }
 
-        String perm = "";
-        for (int i = storage; i < arr.length; i++) {
-            perm += arr[i];
+        StringBuilder perm = new StringBuilder();
+        for (int i = storage + 1; i < arr.length; i++) {
+            perm.append(arr[i]);
         }
-        M.setPlugboard(new Permutation(perm, _alphabet));
+        M.setPlugboard(new Permutation(perm.toString(), M.alphabet()));
     }
 
-    /** Return true iff verbose option specified. */
-    static boolean verbose() {
-        return _verbose;
-    }
-
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String str = "";
-        if (msg.equals("")) {
-            _output.println();
-        }
-
-
-        for (int i = 0; i < msg.length(); i++) {
-            if (!Character.isWhitespace(msg.charAt(i))) {
-                str += msg.charAt(i);
+    /** Return the words of LINE, which are separated by whitespace. */
+    private static String[] words(String line) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0, n = line.length(); i < n; ) {
+            while (i < n && Character.isWhitespace(line.charAt(i))) {
+                i += 1;
             }
-        }
-
-        msg = str;
-        int counter = 0;
-        String subStr = "";
-
-        for (int i = 0; i < msg.length(); i++) {
-            if (counter < 5) {
-                subStr += msg.charAt(i);
-                counter++;
-            } else {
-                _output.print(subStr + " ");
-                if (i == msg.length()) {
-                    _output.println();
-                }
-                counter = 1;
-                subStr = "";
-                subStr += msg.charAt(i);
+            int start = i;
+            while (i < n && !Character.isWhitespace(line.charAt(i))) {
+                i += 1;
+            }
+            if (i > start) {
+                result.add(line.substring(start, i));
             }
         }
+        return result.isEmpty() ? new String[] { "" }
+            : result.toArray(new String[result.size()]);
+    }
 
-        if (!subStr.equals("")) {
-            _output.println(subStr);
-        }
+    /** Use CACHE to remember settings lines. */
+    void setSettingsCache(SettingsCache cache) {
+        _settingsCache = cache;
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private LineReader _input;
+
+    /** Source of machine configuration, unless _image is set. */
+    private ConfigParser _config;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Machine image to configure from, or null. */
+    private ByteBuffer _image;
 
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private PrintWriter _output;
+
+    /** Formats messages onto _output. */
+    private GroupWriter _formatter;
+
+    /** Scratch space for converted messages. */
+    private char[] _converted = new char[1 << 10];
+
+    /** Atlas used to convert messages it matches, or null. */
+    private StateAtlas _atlas;
+
+    /** The state of _atlas for the current message, or -1 if the current
+     *  settings are not in _atlas. */
+    private int _atlasState = -1;
 
     /** True if --verbose specified. */
-    private static boolean _verbose;
+    private boolean _verbose;
+
+    /** Size of the buffer in front of the output channel. */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /** Cache of the settings lines I have seen. */
+    private SettingsCache _settingsCache =
+        new SettingsCache(DEFAULT_SETTINGS_CACHE_SIZE);
+
+    /** Default number of restarts of solvePlugboard. */
+    static final int DEFAULT_RESTARTS = 16;
+
+    /** Default largest number of plugboard pairs for solvePlugboard. */
+    static final int DEFAULT_MAX_PAIRS = 10;
+
+    /** Length of the n-grams with which solvePlugboard scores. */
+    static final int NGRAM_ORDER = 3;
 
-    /** rotors. */
-    private int _rotors;
+    /** Default number of candidates printed by search. */
+    static final int DEFAULT_SEARCH_COUNT = 10;
 
-    /** pawls. */
-    private int _pawls;
+    /** Default number of settings lines to cache. */
+    static final int DEFAULT_SETTINGS_CACHE_SIZE = 256;
 
-    /** collection of rotors. */
-    private Collection<Rotor> _rotorBag;
+    /** Pool on which to convert long messages, or null to convert them
+     *  sequentially. */
+    private ForkJoinPool _pool;
 
 }
@@ -0,0 +1,55 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** Conversion of whole files through memory mappings.
+ *  @author Manu John
+ */
+final class MappedFiles {
+
+    /** The size of each region of a file mapped at once. */
+    static final int WINDOW_SIZE = 1 << 26;
+
+    /** Not instantiable. */
+    private MappedFiles() {
+    }
+
+    /** Convert the contents of the file IN with MACHINE, byte by byte
+     *  as for Machine.convert(ByteBuffer, ByteBuffer), writing the
+     *  results to the file OUT, which is replaced.  Whitespace is
+     *  dropped, unless the alphabet is Alphabet.bytes(), and no
+     *  formatting is added.  Both files are mapped into memory, a window
+     *  of WINDOW_SIZE bytes at a time, and converted in place in the
+     *  mappings.  Returns the number of bytes written. */
+    static long convert(Machine machine, Path in, Path out) {
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.READ,
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.
+                                                TRUNCATE_EXISTING)) {
+            long size = src.size(), read = 0, written = 0;
+            while (read < size) {
+                MappedByteBuffer from =
+                    src.map(FileChannel.MapMode.READ_ONLY, read,
+                            Math.min(WINDOW_SIZE, size - read));
+                MappedByteBuffer to =
+                    dst.map(FileChannel.MapMode.READ_WRITE, written,
+                            from.remaining());
+                written += machine.convert(from, to);
+                read += from.position();
+            }
+            dst.truncate(written);
+            return written;
+        } catch (IOException excp) {
+            throw error("could not convert %s: %s", in, excp.getMessage());
+        }
+    }
+
+}
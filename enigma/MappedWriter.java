@@ -0,0 +1,100 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A Writer that encodes characters directly into a memory mapping of
+ *  its output file, mapping a window of MappedFiles.WINDOW_SIZE bytes
+ *  at a time.  The file is cut to the length actually written when the
+ *  Writer is closed.
+ *  @author Manu John
+ */
+class MappedWriter extends Writer {
+
+    /** A Writer that replaces the file FILE with characters encoded in
+     *  CHARSET. */
+    MappedWriter(Path file, Charset charset) throws IOException {
+        _file = FileChannel.open(file, StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE,
+                                 StandardOpenOption.CREATE,
+                                 StandardOpenOption.TRUNCATE_EXISTING);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        remap();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        encode(CharBuffer.wrap(cbuf, off, len), false);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_window == null) {
+            return;
+        }
+        encode(CharBuffer.allocate(0), true);
+        while (_encoder.flush(_window).isOverflow()) {
+            remap();
+        }
+        long length = _windowStart + _window.position();
+        _window = null;
+        _file.truncate(length);
+        _file.close();
+    }
+
+    /** Encode the characters of CHARS into the mapping, which they are
+     *  the last to go into if END. */
+    private void encode(CharBuffer chars, boolean end) throws IOException {
+        if (_window == null) {
+            throw new IOException("writer is closed");
+        }
+        while (true) {
+            CoderResult result = _encoder.encode(chars, _window, end);
+            if (result.isOverflow()) {
+                remap();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Map a new window starting just after everything written so
+     *  far. */
+    private void remap() throws IOException {
+        if (_window != null) {
+            _windowStart += _window.position();
+        }
+        _window = _file.map(FileChannel.MapMode.READ_WRITE, _windowStart,
+                            MappedFiles.WINDOW_SIZE);
+    }
+
+    /** The output file. */
+    private final FileChannel _file;
+
+    /** Converts characters to bytes. */
+    private final CharsetEncoder _encoder;
+
+    /** The currently mapped region of _file, or null once closed. */
+    private MappedByteBuffer _window;
+
+    /** The position in _file of the start of _window. */
+    private long _windowStart;
+
+}
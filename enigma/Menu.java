@@ -0,0 +1,173 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The menu of a crib: a guess that a stretch of a ciphertext is the
+ *  encryption of some known plaintext.  Its vertices are the letters of
+ *  the alphabet, and it has an edge between the plaintext and ciphertext
+ *  letters at each position of the crib, labelled with the position.
+ *  Only the edges connected to the test letter, the letter with the most
+ *  edges, are used.  Each edge at position T says that, if the
+ *  plugboard maps one of its ends to V, it maps the other end to the
+ *  scrambler's conversion of V at T.
+ *  @author Manu John
+ */
+class Menu {
+
+    /** The menu of CRIB, a sequence of indices into an alphabet of SIZE
+     *  characters, placed against CIPHERTEXT at OFFSET. */
+    Menu(int[] crib, int[] ciphertext, int offset, int size) {
+        if (crib.length == 0) {
+            throw error("crib is empty");
+        }
+        if (offset < 0 || offset > ciphertext.length - crib.length) {
+            throw error("crib does not fit in the ciphertext at %d",
+                        offset);
+        }
+        _length = crib.length;
+        _offset = offset;
+        _size = size;
+
+        int[] degree = new int[size + 1];
+        for (int i = 0; i < crib.length; i += 1) {
+            int p = crib[i], c = ciphertext[offset + i];
+            if (p == c) {
+                throw error("crib cannot be at %d: letter %d would encrypt "
+                            + "to itself", offset, i);
+            }
+            degree[p + 1] += 1;
+            degree[c + 1] += 1;
+        }
+        _first = new int[size + 1];
+        for (int k = 0; k < size; k += 1) {
+            _first[k + 1] = _first[k] + degree[k + 1];
+        }
+        _other = new int[2 * crib.length];
+        _step = new int[2 * crib.length];
+        int[] next = _first.clone();
+        for (int i = 0; i < crib.length; i += 1) {
+            int p = crib[i], c = ciphertext[offset + i];
+            _other[next[p]] = c;
+            _step[next[p]++] = i;
+            _other[next[c]] = p;
+            _step[next[c]++] = i;
+        }
+
+        int test = 0;
+        for (int k = 1; k < size; k += 1) {
+            if (degree(k) > degree(test)) {
+                test = k;
+            }
+        }
+        _testLetter = test;
+        _used = new boolean[crib.length];
+        markComponent();
+    }
+
+    /** Return the letter from which hypotheses are propagated. */
+    int testLetter() {
+        return _testLetter;
+    }
+
+    /** Return the length of the crib. */
+    int length() {
+        return _length;
+    }
+
+    /** Return the position in the ciphertext of the start of the
+     *  crib. */
+    int offset() {
+        return _offset;
+    }
+
+    /** Return true iff the edge at crib position STEP is used. */
+    boolean uses(int step) {
+        return _used[step];
+    }
+
+    /** Return the number of edges used. */
+    int numEdges() {
+        return _numEdges;
+    }
+
+    /** Return the number of closures (independent loops) among the
+     *  edges used.  Each closure is a test that a wrong hypothesis is
+     *  likely to fail, so the more there are, the fewer false stops. */
+    int closures() {
+        return _numEdges - _numLetters + 1;
+    }
+
+    /** Return the number of edges at LETTER. */
+    int degree(int letter) {
+        return _first[letter + 1] - _first[letter];
+    }
+
+    /** Return the index of the first edge at LETTER; its edges are
+     *  numbered from there up to the first edge at LETTER + 1. */
+    int firstEdge(int letter) {
+        return _first[letter];
+    }
+
+    /** Return the letter at the other end of edge E. */
+    int other(int e) {
+        return _other[e];
+    }
+
+    /** Return the crib position at which edge E lies. */
+    int step(int e) {
+        return _step[e];
+    }
+
+    /** Mark the edges connected to _testLetter as used, and count them
+     *  and their letters. */
+    private void markComponent() {
+        boolean[] seen = new boolean[_size];
+        int[] stack = new int[_size];
+        int top = 0;
+        seen[_testLetter] = true;
+        stack[top++] = _testLetter;
+        while (top > 0) {
+            int u = stack[--top];
+            _numLetters += 1;
+            for (int e = _first[u]; e < _first[u + 1]; e += 1) {
+                if (!_used[_step[e]]) {
+                    _used[_step[e]] = true;
+                    _numEdges += 1;
+                }
+                if (!seen[_other[e]]) {
+                    seen[_other[e]] = true;
+                    stack[top++] = _other[e];
+                }
+            }
+        }
+    }
+
+    /** Length of the crib. */
+    private final int _length;
+
+    /** Position of the crib in the ciphertext. */
+    private final int _offset;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** The letter with the most edges. */
+    private final int _testLetter;
+
+    /** The edges at letter K are numbered _first[K] .. _first[K+1]-1. */
+    private final int[] _first;
+
+    /** Letter at the other end of each edge. */
+    private final int[] _other;
+
+    /** Crib position of each edge. */
+    private final int[] _step;
+
+    /** Whether the edge at each crib position is connected to
+     *  _testLetter. */
+    private final boolean[] _used;
+
+    /** Numbers of edges and letters connected to _testLetter. */
+    private int _numEdges, _numLetters;
+
+}
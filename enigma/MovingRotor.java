@@ -15,6 +15,16 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         this._notches = notches;
+        this._notchAt = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); ) {
+            int cp = notches.codePointAt(i);
+            int k = perm.alphabet().toInt(cp);
+            if (k < 0) {
+                throw error("notch %c is not in the alphabet", cp);
+            }
+            _notchAt[k] = true;
+            i += Character.charCount(cp);
+        }
     }
 
     @Override
@@ -23,21 +33,8 @@ class MovingRotor extends Rotor {
     }
 
     @Override
-    boolean atNotch() {
-        int counter = 0;
-        while (counter < notches().length()) {
-            char val = notches().charAt(counter);
-            if (val == alphabet().toChar(setting())) {
-                return true;
-            }
-            counter++;
-        }
-        return false;
-    }
-
-    @Override
-    void advance() {
-        set(permutation().wrap(setting() + 1));
+    boolean atNotch(int posn) {
+        return _notchAt[posn];
     }
 
     @Override
@@ -46,6 +43,9 @@ class MovingRotor extends Rotor {
     }
 
     /** notches. */
-    private String _notches;
+    private final String _notches;
+
+    /** True at the index of each of my notches. */
+    private final boolean[] _notchAt;
 
 }
@@ -20,7 +20,7 @@ public class MovingRotorTest {
 
     /* ***** TESTING UTILITIES ***** */
 
-    private Rotor rotor;
+    private PositionedRotor rotor;
     private String alpha = UPPER_STRING;
 
     /** Check that rotor has an alphabet whose size is that of
@@ -45,8 +45,9 @@ public class MovingRotorTest {
      *  specified by the NAME entry in ROTORS, with given NOTCHES. */
     private void setRotor(String name, HashMap<String, String> rotors,
                           String notches) {
-        rotor = new MovingRotor(name, new Permutation(rotors.get(name), UPPER),
-                                notches);
+        rotor = new PositionedRotor(
+            new MovingRotor(name, new Permutation(rotors.get(name), UPPER),
+                            notches));
     }
 
     /* ***** TESTS ***** */
@@ -71,6 +72,25 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    @Test
+    public void checkRotorUnchanged() {
+        setRotor("I", NAVALA, "QZ");
+        PositionedRotor other = new PositionedRotor(rotor.rotor());
+        rotor.advance();
+        rotor.set(16);
+        assertTrue(rotor.atNotch());
+        assertFalse(other.atNotch());
+        rotor = other;
+        checkRotor("Rotor I shared", UPPER_STRING, NAVALA_MAP.get("I"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkReflectorSet() {
+        new PositionedRotor(new Reflector("B",
+                                          new Permutation(NAVALA.get("B"),
+                                                          UPPER))).set(1);
+    }
+
     @Test
     public void checkConvertForward() {
         setRotor("I", NAVALA, "");
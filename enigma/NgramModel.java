@@ -0,0 +1,111 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** The frequencies of the sequences of N letters (n-grams) in a sample
+ *  of a language, used to judge how much a text looks like it.  The log
+ *  probability of each n-gram is held in one flat array, indexed by the
+ *  n-gram read as a number in base alphabet size.  N-grams missing from
+ *  the sample are given a count of one half.
+ *  @author Manu John
+ */
+class NgramModel {
+
+    /** A model of the N-grams in TEXT, a sequence of indices into an
+     *  alphabet of SIZE characters. */
+    NgramModel(int n, int size, int[] text) {
+        if (n < 1) {
+            throw error("n-grams must have at least one letter");
+        }
+        long cells = 1;
+        for (int i = 0; i < n; i += 1) {
+            cells *= size;
+            if (cells > MAX_CELLS) {
+                throw error("too many %d-grams of %d characters", n, size);
+            }
+        }
+        if (text.length < n) {
+            throw error("sample text is too short");
+        }
+        _n = n;
+        _size = size;
+        int[] counts = new int[(int) cells];
+        for (int i = 0; i + n <= text.length; i += 1) {
+            counts[index(text, i)] += 1;
+        }
+        double total = text.length - n + 1;
+        _logProb = new float[counts.length];
+        for (int k = 0; k < counts.length; k += 1) {
+            double count = counts[k] == 0 ? MISSING_COUNT : counts[k];
+            _logProb[k] = (float) Math.log(count / total);
+        }
+    }
+
+    /** Return a model of the N-grams in TEXT, keeping only its characters
+     *  that are in ALPHA, or whose upper-case forms are. */
+    static NgramModel train(String text, Alphabet alpha, int n) {
+        int[] indices = new int[text.length()];
+        int len = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            int k = alpha.toInt(c);
+            if (k < 0) {
+                k = alpha.toInt(Character.toUpperCase(c));
+            }
+            if (k >= 0) {
+                indices[len] = k;
+                len += 1;
+            }
+        }
+        return new NgramModel(n, alpha.size(),
+                              Arrays.copyOf(indices, len));
+    }
+
+    /** Return the number of letters in my n-grams. */
+    int order() {
+        return _n;
+    }
+
+    /** Return the log probability of the n-gram that starts at TEXT[FROM],
+     *  a sequence of indices into my alphabet. */
+    float score(int[] text, int from) {
+        return _logProb[index(text, from)];
+    }
+
+    /** Return the sum of the log probabilities of all the n-grams in
+     *  TEXT. */
+    double score(int[] text) {
+        double result = 0;
+        for (int i = 0; i + _n <= text.length; i += 1) {
+            result += score(text, i);
+        }
+        return result;
+    }
+
+    /** Return the index in _logProb of the n-gram at TEXT[FROM]. */
+    private int index(int[] text, int from) {
+        int result = 0;
+        for (int i = from; i < from + _n; i += 1) {
+            result = result * _size + text[i];
+        }
+        return result;
+    }
+
+    /** Largest number of distinct n-grams. */
+    private static final long MAX_CELLS = 1 << 24;
+
+    /** Count given to an n-gram missing from the sample. */
+    private static final double MISSING_COUNT = 0.5;
+
+    /** Number of letters in each n-gram. */
+    private final int _n;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Natural log of the probability of each n-gram. */
+    private final float[] _logProb;
+
+}
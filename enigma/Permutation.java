@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -12,52 +14,122 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  If ALPHABET is Alphabet.bytes(), each c is
+     *  instead two hexadecimal digits. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        _input = alphabet.getSeq();
-        _output = alphabet.getSeq();
-
-        String subseq = "";
-        boolean cond = false;
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int i = 0; i < _forward.length; i++) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
 
+        boolean[] used = new boolean[alphabet.size()];
+        int start = -1;
         for (int i = 0; i < cycles.length(); i++) {
-            if (cycles.charAt(i) == ' ') {
+            char ch = cycles.charAt(i);
+            if (ch == '(') {
+                start = i + 1;
+            } else if (ch == ')' && start >= 0) {
+                addCycle(cycles, start, i, used);
+                start = -1;
+            }
+        }
+    }
+
+    /** A permutation of the characters of ALPHABET that takes index K to
+     *  FORWARD[K], and whose inverse takes K to INVERSE[K].  The tables
+     *  become mine, and must be inverses of each other. */
+    Permutation(Alphabet alphabet, int[] forward, int[] inverse) {
+        if (forward.length != alphabet.size()
+            || inverse.length != forward.length) {
+            throw error("permutation tables do not fit the alphabet");
+        }
+        for (int k = 0; k < forward.length; k++) {
+            if (forward[k] < 0 || forward[k] >= forward.length
+                || inverse[forward[k]] != k) {
+                throw error("permutation tables are not inverses");
+            }
+        }
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
+    }
+
+    /** A permutation of ALPHABET whose tables are yet to be filled in by
+     *  unchecked. */
+    private Permutation(Alphabet alphabet) {
+        _alphabet = alphabet;
+    }
+
+    /** Return the permutation of ALPHABET with tables FORWARD and
+     *  INVERSE, which the caller has made inverses of each other, so
+     *  that they are not checked. */
+    private static Permutation unchecked(Alphabet alphabet, int[] forward,
+                                         int[] inverse) {
+        Permutation result = new Permutation(alphabet);
+        result._forward = forward;
+        result._inverse = inverse;
+        return result;
+    }
+
+    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where
+     *  c0c1...cm are the non-blank code points of CYCLES between
+     *  indices FROM (inclusive) and TO (exclusive).  USED marks the
+     *  indices already placed in some cycle. */
+    private void addCycle(String cycles, int from, int to, boolean[] used) {
+        int first = -1, prev = -1;
+        for (int i = from; i < to; i++) {
+            char ch = cycles.charAt(i);
+            if (ch == ' ') {
                 continue;
-            } else if (cycles.charAt(i) == ')') {
-                cond = false;
-                addCycle(subseq);
-                subseq = "";
-            } else if (cycles.charAt(i) == '(') {
-                cond = true;
-            } else if (cond) {
-                subseq = subseq + cycles.charAt(i);
-            }
-        }
-    }
-
-    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        for (int i = 0; i < cycle.length(); i++) {
-            for (int j = 0; j < _input.length(); j++) {
-                if (cycle.charAt(i) == _input.charAt(j)) {
-                    if (i < cycle.length() - 1) {
-                        _output = _output.substring(0, j)
-                                + cycle.charAt(wrap(i + 1))
-                                + _output.substring(j + 1);
-                    } else {
-                        _output = _output.substring(0, j)
-                                + cycle.charAt(0)
-                                + _output.substring(j + 1);
-                    }
+            }
+            int k;
+            if (_alphabet.isBytes()) {
+                k = i + 1 < to
+                    ? Alphabet.hexByte(ch, cycles.charAt(i + 1)) : -1;
+                if (k < 0) {
+                    throw error("cycle %s is not pairs of hex digits",
+                                cycles.substring(from, to));
+                }
+                i += 1;
+            } else {
+                int cp = cycles.codePointAt(i);
+                k = _alphabet.toInt(cp);
+                if (k < 0) {
+                    throw error("character %c is not in the alphabet", cp);
                 }
+                i += Character.charCount(cp) - 1;
             }
+            if (used[k]) {
+                throw error("character %s appears in more than one place",
+                            _alphabet.name(k));
+            }
+            used[k] = true;
+            if (prev < 0) {
+                first = k;
+            } else {
+                link(prev, k);
+            }
+            prev = k;
+        }
+        if (prev >= 0) {
+            link(prev, first);
         }
     }
 
+    /** Make this permutation take index FROM to index TO. */
+    private void link(int from, int to) {
+        _forward[from] = to;
+        _inverse[to] = from;
+    }
+
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
+        if (p >= 0 && p < size()) {
+            return p;
+        }
         int r = p % size();
         if (r < 0) {
             r += size();
@@ -67,36 +139,38 @@ class Permutation {
 
     /** Returns the size of the alphabet I permute. */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        return _input.indexOf(_output.charAt(wrap(p)));
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        return _output.indexOf(_input.charAt(wrap(c)));
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        if (!_alphabet.contains(p)) {
+        int k = _alphabet.toInt(p);
+        if (k < 0) {
             throw new EnigmaException("Error: this char is not in alphabet");
         }
-        return _output.charAt(permute(_output.indexOf(p)));
+        return _alphabet.toChar(_forward[k]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        if (!_alphabet.contains(c)) {
+        int k = _alphabet.toInt(c);
+        if (k < 0) {
             throw new EnigmaException("Error: this char is not in alphabet");
         }
-        return _input.charAt(invert(_input.indexOf(c)));
+        return _alphabet.toChar(_inverse[k]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -107,21 +181,157 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (int i = 0; i < _input.length(); i++) {
-            if (_input.charAt(i) == _output.charAt(i)) {
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == i) {
                 return false;
             }
         }
         return true;
     }
 
+    /** Return the permutation that applies me and then AFTER, whose
+     *  alphabet must have the same characters as mine, in the same
+     *  order. */
+    Permutation compose(Permutation after) {
+        if (after._alphabet != _alphabet
+            && !after._alphabet.getSeq().equals(_alphabet.getSeq())) {
+            throw error("permutations have different alphabets");
+        }
+        int n = size();
+        int[] forward = new int[n], inverse = new int[n];
+        for (int k = 0; k < n; k++) {
+            int e = after._forward[_forward[k]];
+            forward[k] = e;
+            inverse[e] = k;
+        }
+        return unchecked(_alphabet, forward, inverse);
+    }
+
+    /** Return my inverse, which shares my tables. */
+    Permutation inverse() {
+        return unchecked(_alphabet, _inverse, _forward);
+    }
+
+    /** Return the K-th power of me, which is my inverse's -K-th power if
+     *  K is negative.  Each cycle is walked a fixed number of times, so
+     *  this takes time linear in size() whatever K is. */
+    Permutation power(int k) {
+        int n = size();
+        int[] forward = new int[n], inverse = new int[n];
+        Arrays.fill(forward, -1);
+        for (int i = 0; i < n; i++) {
+            if (forward[i] >= 0) {
+                continue;
+            }
+            int len = 1;
+            for (int j = _forward[i]; j != i; j = _forward[j]) {
+                len += 1;
+            }
+            int t = i;
+            for (int m = Math.floorMod(k, len); m > 0; m -= 1) {
+                t = _forward[t];
+            }
+            for (int j = i, m = 0; m < len; m++) {
+                forward[j] = t;
+                inverse[t] = j;
+                j = _forward[j];
+                t = _forward[t];
+            }
+        }
+        return unchecked(_alphabet, forward, inverse);
+    }
+
+    /** Return me conjugated by a rotation of S places: the permutation
+     *  taking K to permute(K + S) - S, modulo size(), which is what a
+     *  rotor with my wiring applies at offset S. */
+    Permutation conjugate(int s) {
+        int n = size();
+        s = wrap(s);
+        int[] forward = new int[n], inverse = new int[n];
+        for (int k = 0, j = s; k < n; k++) {
+            int e = _forward[j] - s;
+            if (e < 0) {
+                e += n;
+            }
+            forward[k] = e;
+            inverse[e] = k;
+            j += 1;
+            if (j == n) {
+                j = 0;
+            }
+        }
+        return unchecked(_alphabet, forward, inverse);
+    }
+
+    /** Return my cycle type: the lengths of my cycles, fixed points
+     *  included, in non-increasing order. */
+    int[] cycleType() {
+        int[] lengths = new int[size()];
+        return Arrays.copyOf(lengths, cycleType(lengths));
+    }
+
+    /** Store my cycle type in the first elements of LENGTHS, which must
+     *  have at least size() elements, and return the number of my
+     *  cycles.  The other elements of LENGTHS are overwritten.  Allocates
+     *  nothing. */
+    int cycleType(int[] lengths) {
+        int n = size();
+        if (lengths.length < n) {
+            throw error("cycle type needs %d elements", n);
+        }
+        Arrays.fill(lengths, 0, n, 0);
+        for (int i = 0; i < n; i++) {
+            if (lengths[i] != 0) {
+                continue;
+            }
+            int len = 1;
+            for (int j = _forward[i]; j != i; j = _forward[j]) {
+                len += 1;
+            }
+            lengths[i] = len;
+            for (int j = _forward[i]; j != i; j = _forward[j]) {
+                lengths[j] = len;
+            }
+        }
+        Arrays.sort(lengths, 0, n);
+        int cycles = 0;
+        for (int i = 0; i < n; i += lengths[i]) {
+            lengths[cycles] = lengths[i];
+            cycles += 1;
+        }
+        for (int i = 0, j = cycles - 1; i < j; i += 1, j -= 1) {
+            int t = lengths[i];
+            lengths[i] = lengths[j];
+            lengths[j] = t;
+        }
+        return cycles;
+    }
+
+    /** Return the 2-cycles of PLUG, which maps each index of a character
+     *  of ALPHABET to the index of its partner, or to itself or -1 if it
+     *  has none, in cycle notation, in the order of their first
+     *  characters. */
+    static String pairs(int[] plug, Alphabet alphabet) {
+        StringBuilder result = new StringBuilder();
+        for (int a = 0; a < plug.length; a++) {
+            if (plug[a] > a) {
+                if (result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append('(').append(alphabet.name(a))
+                    .append(alphabet.name(plug[a])).append(')');
+            }
+        }
+        return result.toString();
+    }
+
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** input. */
-    private String _input;
+    /** The image of each index under this permutation. */
+    private int[] _forward;
 
-    /** output. */
-    private String _output;
+    /** The image of each index under the inverse of this permutation. */
+    private int[] _inverse;
 
 }
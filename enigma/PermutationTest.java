@@ -78,5 +78,114 @@ public class PermutationTest {
         assertEquals(7, perm.invert(0));
     }
 
+    @Test
+    public void checkInverseTables() {
+        perm = new Permutation(NAVALA.get("I"), UPPER);
+        for (int i = 0; i < UPPER_STRING.length(); i += 1) {
+            assertEquals(i, perm.invert(perm.permute(i)));
+            assertEquals(i, perm.permute(perm.invert(i)));
+        }
+        assertEquals(perm.permute(4), perm.permute(4 + 26));
+        assertEquals(perm.invert(4), perm.invert(4 - 26));
+    }
+
+    @Test
+    public void checkCompose() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        Permutation q = new Permutation(NAVALA.get("B"), UPPER);
+        perm = p.compose(q);
+        for (int i = 0; i < 26; i += 1) {
+            assertEquals(q.permute(p.permute(i)), perm.permute(i));
+            assertEquals(i, perm.invert(perm.permute(i)));
+        }
+        perm = p.compose(q).compose(p.inverse());
+        assertTrue(perm.derangement());
+        assertArrayEquals(q.cycleType(), perm.cycleType());
+    }
+
+    @Test
+    public void checkInverse() {
+        perm = new Permutation("(ABC) (DE)", new Alphabet("ABCDEF"))
+            .inverse();
+        checkPerm("inverse", "ABCDEF", "CABEDF");
+    }
+
+    @Test
+    public void checkPower() {
+        perm = new Permutation("(ABCD) (EF)", new Alphabet("ABCDEFG"))
+            .power(3);
+        checkPerm("cube", "ABCDEFG", "DABCFEG");
+        perm = new Permutation("(ABCD) (EF)", new Alphabet("ABCDEFG"))
+            .power(-1);
+        checkPerm("inverse", "ABCDEFG", "DABCFEG");
+        perm = new Permutation("(ABCD) (EF)", new Alphabet("ABCDEFG"))
+            .power(0);
+        checkPerm("identity", "ABCDEFG", "ABCDEFG");
+        Permutation p = new Permutation(NAVALA.get("VI"), UPPER);
+        Permutation slow = p;
+        for (int k = 1; k < 17; k += 1) {
+            slow = slow.compose(p);
+        }
+        assertArrayEquals(new int[] { 14, 8, 4 }, p.cycleType());
+        perm = p.power(56 * 17857 + 17);
+        for (int i = 0; i < 26; i += 1) {
+            assertEquals(slow.permute(i), perm.permute(i));
+            assertEquals(slow.invert(i), perm.invert(i));
+        }
+    }
+
+    @Test
+    public void checkConjugate() {
+        Permutation p = new Permutation(NAVALA.get("III"), UPPER);
+        PositionedRotor rotor = new PositionedRotor(new FixedRotor("III", p));
+        for (int s = -30; s < 30; s += 1) {
+            rotor.set(Math.floorMod(s, 26));
+            perm = p.conjugate(s);
+            for (int i = 0; i < 26; i += 1) {
+                assertEquals(rotor.convertForward(i), perm.permute(i));
+                assertEquals(rotor.convertBackward(i), perm.invert(i));
+            }
+        }
+    }
+
+    @Test
+    public void checkCycleType() {
+        perm = new Permutation("(ABC) (DE) (FGHI)",
+                               new Alphabet("ABCDEFGHIJK"));
+        assertArrayEquals(new int[] { 4, 3, 2, 1, 1 }, perm.cycleType());
+        int[] lengths = new int[20];
+        assertEquals(5, perm.cycleType(lengths));
+        assertEquals(4, lengths[0]);
+        assertEquals(1, lengths[4]);
+        assertArrayEquals(new int[] { 26 },
+                          new Permutation("(ABCDEFGHIJKLMNOPQRSTUVWXYZ)",
+                                          UPPER).cycleType());
+        assertArrayEquals(new int[] { 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2 },
+                          new Permutation(NAVALA.get("B"), UPPER)
+                          .cycleType());
+    }
+
+    @Test
+    public void checkComposeEqualAlphabets() {
+        perm = new Permutation("(ABC)", new Alphabet("ABC"))
+            .compose(new Permutation("(AB)", new Alphabet("ABC")));
+        checkPerm("equal alphabets", "ABC", "ACB");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkComposeAlphabets() {
+        new Permutation("(AB)", new Alphabet("AB"))
+            .compose(new Permutation("(CD)", new Alphabet("CD")));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkCharNotInAlphabet() {
+        perm = new Permutation("(AB) (CX)", new Alphabet("ABCD"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedChar() {
+        perm = new Permutation("(AB) (CA)", new Alphabet("ABCD"));
+    }
 
 }
@@ -0,0 +1,293 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** One restart of a PlugboardSolver: a plugboard and the decryption of
+ *  the ciphertext under it, with the n-gram score of every window of the
+ *  decryption.  Changing the plugboard changes the decryption only at
+ *  the positions where the ciphertext, or what the rotors make of it
+ *  after the plugboard, is one of the letters whose partners changed.
+ *  The first are found from the solver's index of the ciphertext, and
+ *  the second from my index of the positions by what the rotors make of
+ *  them.  Only the windows that hold those positions are rescored.
+ *  @author Manu John
+ */
+class PlugboardClimber {
+
+    /** A climber for SOLVER, starting from an empty plugboard. */
+    PlugboardClimber(PlugboardSolver solver) {
+        _solver = solver;
+        _model = solver.model();
+        _size = solver.alphabet().size();
+        _length = solver.length();
+        _order = _model.order();
+        int windows = Math.max(0, _length - _order + 1);
+
+        _plug = new int[_size];
+        for (int a = 0; a < _size; a += 1) {
+            _plug[a] = a;
+        }
+        _mid = new int[_length];
+        _plain = new int[_length];
+        _window = new float[windows];
+        _byMid = new int[_size][];
+        _midCount = new int[_size];
+        _slot = new int[_length];
+        _positionStamp = new int[_length];
+        _windowStamp = new int[windows];
+        _affected = new int[_length];
+        _newMid = new int[_length];
+        _oldPlain = new int[_length];
+        _windows = new int[windows];
+        _newWindow = new float[windows];
+        for (int y = 0; y < _size; y += 1) {
+            _byMid[y] = new int[INITIAL_BUCKET];
+        }
+        decrypt();
+    }
+
+    /** Connect a random number of random pairs of letters, choosing them
+     *  with RANDOM. */
+    void randomize(Random random) {
+        int[] letters = new int[_size];
+        for (int a = 0; a < _size; a += 1) {
+            letters[a] = a;
+            _plug[a] = a;
+        }
+        for (int a = _size - 1; a > 0; a -= 1) {
+            int b = random.nextInt(a + 1);
+            int t = letters[a];
+            letters[a] = letters[b];
+            letters[b] = t;
+        }
+        _pairs = random.nextInt(_solver.maxPairs() + 1);
+        for (int k = 0; k < _pairs; k += 1) {
+            _plug[letters[2 * k]] = letters[2 * k + 1];
+            _plug[letters[2 * k + 1]] = letters[2 * k];
+        }
+        decrypt();
+    }
+
+    /** Make every change to my plugboard that improves my score, until
+     *  there are none. */
+    void climb() {
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a + 1; b < _size; b += 1) {
+                    improved |= tryChange(a, b);
+                }
+            }
+        }
+    }
+
+    /** Return my plugboard and its score. */
+    PlugboardSolution solution() {
+        return new PlugboardSolution(
+            Permutation.pairs(_plug, _solver.alphabet()), _score);
+    }
+
+    /** Return my current score. */
+    double score() {
+        return _score;
+    }
+
+    /** Disconnect A and B if they are connected, and otherwise connect
+     *  them to each other, disconnecting their partners, keeping the
+     *  change iff it improves my score.  Returns true iff it does. */
+    private boolean tryChange(int a, int b) {
+        int pa = _plug[a], pb = _plug[b];
+        int pairs;
+        if (pa == b) {
+            _plug[a] = a;
+            _plug[b] = b;
+            pairs = _pairs - 1;
+        } else {
+            pairs = _pairs + 1 - (pa != a ? 1 : 0) - (pb != b ? 1 : 0);
+            if (pairs > _solver.maxPairs()) {
+                return false;
+            }
+            _plug[pa] = pa;
+            _plug[pb] = pb;
+            _plug[a] = b;
+            _plug[b] = a;
+        }
+
+        _stamp += 1;
+        int n = 0;
+        n = addAffected(a, n);
+        n = addAffected(b, n);
+        if (pa != a && pa != b) {
+            n = addAffected(pa, n);
+        }
+        if (pb != b && pb != a) {
+            n = addAffected(pb, n);
+        }
+
+        for (int k = 0; k < n; k += 1) {
+            int i = _affected[k];
+            _newMid[k] = _solver.scramble(i, _plug[_solver.cipher(i)]);
+            _oldPlain[k] = _plain[i];
+            _plain[i] = _plug[_newMid[k]];
+        }
+        int w = 0;
+        double delta = 0;
+        for (int k = 0; k < n; k += 1) {
+            int i = _affected[k];
+            int last = Math.min(i, _window.length - 1);
+            for (int j = Math.max(0, i - _order + 1); j <= last; j += 1) {
+                if (_windowStamp[j] != _stamp) {
+                    _windowStamp[j] = _stamp;
+                    _windows[w] = j;
+                    _newWindow[w] = _model.score(_plain, j);
+                    delta += _newWindow[w] - _window[j];
+                    w += 1;
+                }
+            }
+        }
+
+        if (delta > MIN_GAIN) {
+            for (int k = 0; k < w; k += 1) {
+                _window[_windows[k]] = _newWindow[k];
+            }
+            for (int k = 0; k < n; k += 1) {
+                moveMid(_affected[k], _newMid[k]);
+            }
+            _score += delta;
+            _pairs = pairs;
+            return true;
+        }
+        for (int k = 0; k < n; k += 1) {
+            _plain[_affected[k]] = _oldPlain[k];
+        }
+        _plug[a] = a;
+        _plug[b] = b;
+        _plug[pa] = a;
+        _plug[a] = pa;
+        _plug[pb] = b;
+        _plug[b] = pb;
+        return false;
+    }
+
+    /** Add to the first N entries of _affected the positions not already
+     *  there at which either the ciphertext or the rotors' conversion is
+     *  Y.  Returns the new number of entries. */
+    private int addAffected(int y, int n) {
+        int end = _solver.firstPosition(y + 1);
+        for (int k = _solver.firstPosition(y); k < end; k += 1) {
+            n = addAffectedPosition(_solver.position(k), n);
+        }
+        int[] bucket = _byMid[y];
+        for (int k = 0; k < _midCount[y]; k += 1) {
+            n = addAffectedPosition(bucket[k], n);
+        }
+        return n;
+    }
+
+    /** Add position I to the first N entries of _affected if it is not
+     *  already there, returning the new number of entries. */
+    private int addAffectedPosition(int i, int n) {
+        if (_positionStamp[i] != _stamp) {
+            _positionStamp[i] = _stamp;
+            _affected[n] = i;
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Decrypt the whole ciphertext under my plugboard, and score it. */
+    private void decrypt() {
+        Arrays.fill(_midCount, 0);
+        for (int i = 0; i < _length; i += 1) {
+            int y = _solver.scramble(i, _plug[_solver.cipher(i)]);
+            _plain[i] = _plug[y];
+            _mid[i] = -1;
+            moveMid(i, y);
+        }
+        _score = 0;
+        for (int j = 0; j < _window.length; j += 1) {
+            _window[j] = _model.score(_plain, j);
+            _score += _window[j];
+        }
+    }
+
+    /** Record that the rotors' conversion at position I is Y, moving I
+     *  to the bucket for Y. */
+    private void moveMid(int i, int y) {
+        int old = _mid[i];
+        if (old == y) {
+            return;
+        }
+        if (old >= 0) {
+            int last = _byMid[old][--_midCount[old]];
+            _byMid[old][_slot[i]] = last;
+            _slot[last] = _slot[i];
+        }
+        if (_midCount[y] == _byMid[y].length) {
+            _byMid[y] = Arrays.copyOf(_byMid[y], 2 * _midCount[y]);
+        }
+        _slot[i] = _midCount[y];
+        _byMid[y][_midCount[y]++] = i;
+        _mid[i] = y;
+    }
+
+    /** Initial capacity of each bucket of _byMid. */
+    private static final int INITIAL_BUCKET = 16;
+
+    /** Smallest improvement in score that a change must make. */
+    private static final double MIN_GAIN = 1e-6;
+
+    /** The solver I am a restart of. */
+    private final PlugboardSolver _solver;
+
+    /** The model that scores decryptions. */
+    private final NgramModel _model;
+
+    /** Size of the alphabet, length of the ciphertext, and length of an
+     *  n-gram. */
+    private final int _size, _length, _order;
+
+    /** The partner of each letter, or the letter itself. */
+    private final int[] _plug;
+
+    /** Number of connected pairs in _plug. */
+    private int _pairs;
+
+    /** At each position, the rotors' conversion of the plugged
+     *  ciphertext, and the decryption. */
+    private final int[] _mid, _plain;
+
+    /** The score of the n-gram of _plain at each position. */
+    private final float[] _window;
+
+    /** My score: the sum of _window. */
+    private double _score;
+
+    /** The positions at which _mid is Y are the first _midCount[Y]
+     *  entries of _byMid[Y], position I being at _slot[I]. */
+    private final int[][] _byMid;
+
+    /** See _byMid. */
+    private final int[] _midCount, _slot;
+
+    /** Number of the current change. */
+    private int _stamp;
+
+    /** The number of the last change affecting each position and each
+     *  window. */
+    private final int[] _positionStamp, _windowStamp;
+
+    /** The positions affected by the current change, with their new
+     *  _mid values and old _plain values. */
+    private final int[] _affected, _newMid, _oldPlain;
+
+    /** The windows affected by the current change, with their new
+     *  scores. */
+    private final int[] _windows;
+
+    /** See _windows. */
+    private final float[] _newWindow;
+
+}
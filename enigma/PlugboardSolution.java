@@ -0,0 +1,44 @@
+package enigma;
+
+/** A plugboard found by a PlugboardSolver, with its score.
+ *  @author Manu John
+ */
+final class PlugboardSolution implements Comparable<PlugboardSolution> {
+
+    /** A solution with the plugboard PLUGBOARD, in cycle notation, under
+     *  which the decryption scored SCORE. */
+    PlugboardSolution(String plugboard, double score) {
+        _plugboard = plugboard;
+        _score = score;
+    }
+
+    /** Return my plugboard in cycle notation. */
+    String plugboard() {
+        return _plugboard;
+    }
+
+    /** Return my score. */
+    double score() {
+        return _score;
+    }
+
+    /** Orders solutions by score, and then by plugboard, so that the
+     *  best solution is the greatest. */
+    @Override
+    public int compareTo(PlugboardSolution other) {
+        int c = Double.compare(_score, other._score);
+        return c != 0 ? c : other._plugboard.compareTo(_plugboard);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.3f %s", _score, _plugboard);
+    }
+
+    /** My plugboard. */
+    private final String _plugboard;
+
+    /** My score. */
+    private final double _score;
+
+}
@@ -0,0 +1,152 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only search for the plugboard of a Machine whose rotors
+ *  and settings are known.  Each restart climbs from a random plugboard
+ *  (the first from an empty one), trying every change that connects a
+ *  pair of letters, or disconnects a connected pair, and keeping those
+ *  that make the decryption score better under an NgramModel, until no
+ *  change helps.  The conversion by the rotors at every position of the
+ *  ciphertext is computed once, so that decrypting under a plugboard
+ *  needs no Machine, and each change is scored by a PlugboardClimber
+ *  that decrypts and rescores only the positions it affects.  Restarts
+ *  are independent, and are run on a ForkJoinPool.
+ *  @author Manu John
+ */
+class PlugboardSolver {
+
+    /** A solver for CIPHERTEXT, a sequence of indices into the alphabet of
+     *  MACHINE, whose rotors are at the settings at which it starts.  The
+     *  plugboard of MACHINE is ignored.  Decryptions are scored with
+     *  MODEL, plugboards have at most MAXPAIRS pairs, and the random
+     *  choices of restarts are derived from SEED. */
+    PlugboardSolver(Machine machine, int[] ciphertext, NgramModel model,
+                    int maxPairs, long seed) {
+        if (maxPairs < 0) {
+            throw error("plugboard pairs may not be negative");
+        }
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        _cipher = ciphertext.clone();
+        _model = model;
+        _maxPairs = Math.min(maxPairs, _size / 2);
+        _seed = seed;
+
+        _table = new int[ciphertext.length * _size];
+        Permutation none = new Permutation("", _alphabet);
+        for (int x = 0; x < _size; x += 1) {
+            Machine m = machine.copy();
+            m.setPlugboard(none);
+            for (int i = 0; i < ciphertext.length; i += 1) {
+                _table[i * _size + x] = m.convert(x);
+            }
+        }
+
+        _first = new int[_size + 1];
+        for (int c : ciphertext) {
+            _first[c + 1] += 1;
+        }
+        for (int k = 0; k < _size; k += 1) {
+            _first[k + 1] += _first[k];
+        }
+        _positions = new int[ciphertext.length];
+        int[] next = _first.clone();
+        for (int i = 0; i < ciphertext.length; i += 1) {
+            _positions[next[ciphertext[i]]++] = i;
+        }
+    }
+
+    /** Return the best plugboard found by RESTARTS restarts, run on
+     *  POOL. */
+    PlugboardSolution solve(int restarts, ForkJoinPool pool) {
+        if (restarts <= 0) {
+            throw error("must make at least one restart");
+        }
+        return pool.invoke(new PlugboardTask(this, 0, restarts));
+    }
+
+    /** Return the plugboard found by restart number RESTART. */
+    PlugboardSolution climb(int restart) {
+        PlugboardClimber climber = new PlugboardClimber(this);
+        if (restart > 0) {
+            climber.randomize(new Random(_seed + restart));
+        }
+        climber.climb();
+        return climber.solution();
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the length of my ciphertext. */
+    int length() {
+        return _cipher.length;
+    }
+
+    /** Return the character at position I of my ciphertext. */
+    int cipher(int i) {
+        return _cipher[i];
+    }
+
+    /** Return the conversion of X by the rotors alone at position I of my
+     *  ciphertext. */
+    int scramble(int i, int x) {
+        return _table[i * _size + x];
+    }
+
+    /** Return the index in positions() of the first position of
+     *  character C in my ciphertext; its positions are listed from there
+     *  up to the first position of C + 1. */
+    int firstPosition(int c) {
+        return _first[c];
+    }
+
+    /** Return the Kth position of my ciphertext, in order of
+     *  character. */
+    int position(int k) {
+        return _positions[k];
+    }
+
+    /** Return the model with which decryptions are scored. */
+    NgramModel model() {
+        return _model;
+    }
+
+    /** Return the largest number of plugboard pairs. */
+    int maxPairs() {
+        return _maxPairs;
+    }
+
+    /** The alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** The size of _alphabet. */
+    private final int _size;
+
+    /** The ciphertext. */
+    private final int[] _cipher;
+
+    /** The model that scores decryptions. */
+    private final NgramModel _model;
+
+    /** The largest number of plugboard pairs. */
+    private final int _maxPairs;
+
+    /** Seed for the random choices of restarts. */
+    private final long _seed;
+
+    /** The conversion of X by the rotors at position I of the ciphertext
+     *  is at I * _size + X. */
+    private final int[] _table;
+
+    /** The positions of character C in the ciphertext are
+     *  _positions[_first[C] .. _first[C+1]-1]. */
+    private final int[] _first, _positions;
+
+}
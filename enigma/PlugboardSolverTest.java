@@ -0,0 +1,101 @@
+package enigma;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PlugboardSolver and NgramModel
+ *  classes.
+ *  @author Manu John
+ */
+public class PlugboardSolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    private static final String SAMPLE =
+        "From his shoulder Hiawatha took the camera of rosewood, made of "
+        + "sliding, folding rosewood; neatly put it all together. In its "
+        + "case it lay compactly, folded into nearly nothing; but he opened "
+        + "out the hinges, pushed and pulled the joints and hinges, till it "
+        + "looked all squares and oblongs, like a complicated figure in the "
+        + "second book of Euclid. This he perched upon a tripod, crouched "
+        + "beneath its dusky cover, stretched his hand, enforcing silence, "
+        + "said, Be motionless, I beg you! Mystic, awful was the process. "
+        + "All the family in order sat before him for their pictures: each "
+        + "in turn, as he was taken, volunteered his own suggestions, his "
+        + "ingenious suggestions.";
+
+    /** Return a four-slot naval machine set to B IV I III QKD. */
+    private Machine machine() {
+        Machine m = navalMachine(4);
+        m.insertRotors(new String[] { "B", "IV", "I", "III" });
+        m.setRotors("QKD");
+        return m;
+    }
+
+    @Test
+    public void testModel() {
+        NgramModel model = new NgramModel(2, 3, new int[] { 0, 1, 0, 1 });
+        assertEquals(2, model.order());
+        assertEquals(Math.log(2.0 / 3.0), model.score(new int[] { 0, 1 }, 0),
+                     1e-6);
+        assertEquals(Math.log(1.0 / 3.0), model.score(new int[] { 1, 0 }, 0),
+                     1e-6);
+        assertEquals(Math.log(0.5 / 3.0), model.score(new int[] { 2, 2 }, 0),
+                     1e-6);
+        assertEquals(Math.log(2.0 / 3.0) + Math.log(1.0 / 3.0),
+                     model.score(new int[] { 0, 1, 0 }), 1e-6);
+
+        NgramModel trained = NgramModel.train("ab, AB!", UPPER, 1);
+        assertEquals(Math.log(0.5), trained.score(new int[] { 0 }, 0),
+                     1e-6);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testModelTooLarge() {
+        new NgramModel(6, 26, new int[10]);
+    }
+
+    @Test
+    public void testSolve() {
+        Machine m = machine();
+        m.setPlugboard(new Permutation(NAVAL_PLUGBOARD, UPPER));
+        int[] cipher = encrypt(m, letters(SAMPLE));
+        NgramModel model = NgramModel.train(SAMPLE, UPPER, 2);
+
+        PlugboardSolver solver =
+            new PlugboardSolver(machine(), cipher, model, 10, 1);
+        PlugboardSolution best = solver.solve(4, new ForkJoinPool(2));
+        assertEquals(NAVAL_PLUGBOARD, best.plugboard());
+
+        Machine check = machine();
+        check.setPlugboard(new Permutation(best.plugboard(), UPPER));
+        assertEquals(model.score(encrypt(check, cipher)), best.score(),
+                     1e-3);
+    }
+
+    @Test
+    public void testRestartScores() {
+        Machine m = machine();
+        m.setPlugboard(new Permutation(NAVAL_PLUGBOARD, UPPER));
+        int[] cipher = encrypt(m, letters(SAMPLE));
+        NgramModel model = NgramModel.train(SAMPLE, UPPER, 3);
+        PlugboardSolver solver =
+            new PlugboardSolver(machine(), cipher, model, 3, 7);
+        for (int restart = 0; restart < 3; restart += 1) {
+            PlugboardSolution found = solver.climb(restart);
+            assertTrue(found.plugboard().split("\\(").length - 1 <= 3);
+            Machine check = machine();
+            check.setPlugboard(new Permutation(found.plugboard(), UPPER));
+            assertEquals(model.score(encrypt(check, cipher)),
+                         found.score(), 1e-3);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package enigma;
+
+import java.util.concurrent.RecursiveTask;
+
+/** A task that runs some of the restarts of a PlugboardSolver,
+ *  returning the best solution they find.
+ *  @author Manu John
+ */
+class PlugboardTask extends RecursiveTask<PlugboardSolution> {
+
+    /** A task that runs restarts FROM .. TO-1 of SOLVER, splitting them
+     *  among subtasks if there is more than one. */
+    PlugboardTask(PlugboardSolver solver, int from, int to) {
+        _solver = solver;
+        _from = from;
+        _to = to;
+    }
+
+    @Override
+    protected PlugboardSolution compute() {
+        if (_to - _from == 1) {
+            return _solver.climb(_from);
+        }
+        int mid = _from + (_to - _from) / 2;
+        PlugboardTask left = new PlugboardTask(_solver, _from, mid);
+        left.fork();
+        PlugboardSolution right =
+            new PlugboardTask(_solver, mid, _to).compute();
+        PlugboardSolution best = left.join();
+        return right.compareTo(best) > 0 ? right : best;
+    }
+
+    /** The solver I am part of. */
+    private final PlugboardSolver _solver;
+
+    /** The range of restarts I run. */
+    private final int _from, _to;
+
+}
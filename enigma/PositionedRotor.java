@@ -0,0 +1,90 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A Rotor used on its own, outside a Machine, at a setting and ring
+ *  setting of its own.  The Rotor itself never changes and may be shared
+ *  by any number of Machines and PositionedRotors at once; the setting
+ *  belongs to me alone.
+ *  @author Manu John
+ */
+class PositionedRotor {
+
+    /** ROTOR at setting 0 with ring setting 0. */
+    PositionedRotor(Rotor rotor) {
+        _rotor = rotor;
+    }
+
+    /** Return my rotor. */
+    Rotor rotor() {
+        return _rotor;
+    }
+
+    /** Return the size of my rotor's alphabet. */
+    int size() {
+        return _rotor.size();
+    }
+
+    /** Return my current setting. */
+    int setting() {
+        return _pos;
+    }
+
+    /** Set setting() to POSN.  A reflector has only setting 0. */
+    void set(int posn) {
+        if (_rotor.reflecting() && posn != 0) {
+            throw error("reflector has only one position");
+        }
+        _pos = posn;
+    }
+
+    /** Set setting() to character CPOSN. */
+    void set(char cposn) {
+        set(_rotor.alphabet().toInt(cposn));
+    }
+
+    /** Set my ring setting to character CPOSN. */
+    void setRinger(char cposn) {
+        _ringSetting = _rotor.alphabet().toInt(cposn);
+    }
+
+    /** Return the conversion of P (an integer in the range 0..size()-1)
+     *  according to my rotor's permutation at my setting. */
+    int convertForward(int p) {
+        Permutation perm = _rotor.permutation();
+        int result = perm.permute(perm.wrap(p + _pos - _ringSetting));
+        return perm.wrap(result - _pos + _ringSetting);
+    }
+
+    /** Return the conversion of E (an integer in the range 0..size()-1)
+     *  according to the inverse of my rotor's permutation at my
+     *  setting. */
+    int convertBackward(int e) {
+        Permutation perm = _rotor.permutation();
+        int result = perm.invert(perm.wrap(e + _pos - _ringSetting));
+        return perm.wrap(result - _pos + _ringSetting);
+    }
+
+    /** Returns true iff I am positioned to allow the rotor to my left
+     *  to advance. */
+    boolean atNotch() {
+        return _rotor.atNotch(_pos);
+    }
+
+    /** Advance me one position, if my rotor moves. */
+    void advance() {
+        if (_rotor.rotates()) {
+            _pos = _rotor.permutation().wrap(_pos + 1);
+        }
+    }
+
+    /** The rotor I position. */
+    private final Rotor _rotor;
+
+    /** My setting. */
+    private int _pos;
+
+    /** My ring setting. */
+    private int _ringSetting;
+
+}
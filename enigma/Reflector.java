@@ -18,21 +18,6 @@ class Reflector extends FixedRotor {
     }
 
 
-    @Override
-    void set(int posn) {
-        if (posn != 0) {
-            throw error("reflector has only one position");
-        }
-    }
-
-    @Override
-    void set(char cposn) {
-        if (permutation().alphabet().toInt(cposn) != 0) {
-            throw error("reflection has only one position");
-        }
-        return;
-    }
-
     @Override
     boolean reflecting() {
         return true;
@@ -0,0 +1,115 @@
+package enigma;
+
+import java.io.IOException;
+
+import static enigma.EnigmaException.*;
+
+/** A Tracer that describes each conversion on a line of the form
+ *  "[AXLE] F -> Y -> ... -> Q", the bracketed letters being the rotor
+ *  settings.  Events are recorded as ints in a fixed buffer and only
+ *  formatted, in bulk, when the buffer fills or on flush.
+ *  @author Manu John
+ */
+class RingTracer implements Tracer {
+
+    /** A tracer for a machine with alphabet ALPHA whose lines go to
+     *  OUTPUT. */
+    RingTracer(Alphabet alpha, Appendable output) {
+        _alphabet = alpha;
+        _output = output;
+    }
+
+    @Override
+    public void keypress(Machine machine, int c) {
+        int n = machine.numRotors();
+        if (_size + n + 2 > _events.length) {
+            flush();
+        }
+        _events[_size] = KEYPRESS - (n - 1);
+        for (int r = 1; r < n; r += 1) {
+            _events[_size + r] = machine.setting(r);
+        }
+        _events[_size + n] = c;
+        _size += n + 1;
+    }
+
+    @Override
+    public void mapped(int c) {
+        if (_size + 2 > _events.length) {
+            flush();
+        }
+        _events[_size] = c;
+        _size += 1;
+    }
+
+    @Override
+    public void converted(int c) {
+        if (_size + 2 > _events.length) {
+            flush();
+        }
+        _events[_size] = CONVERTED;
+        _events[_size + 1] = c;
+        _size += 2;
+    }
+
+    /** Format all recorded events and send them to my output. */
+    void flush() {
+        _text.setLength(0);
+        int i = 0;
+        while (i < _size) {
+            int e = _events[i];
+            if (e == CONVERTED) {
+                _text.appendCodePoint(_alphabet.codePoint(_events[i + 1]));
+                _text.append(System.lineSeparator());
+                i += 2;
+            } else if (e <= KEYPRESS) {
+                int n = KEYPRESS - e;
+                _text.append('[');
+                for (int r = 1; r <= n; r += 1) {
+                    _text.appendCodePoint(_alphabet.codePoint(_events[i + r]));
+                }
+                _text.append("] ");
+                _text.appendCodePoint(_alphabet.codePoint(_events[i + n + 1]));
+                _text.append(" -> ");
+                i += n + 2;
+            } else {
+                _text.appendCodePoint(_alphabet.codePoint(e));
+                _text.append(" -> ");
+                i += 1;
+            }
+        }
+        _size = 0;
+        try {
+            _output.append(_text);
+        } catch (IOException excp) {
+            throw error("could not write trace: %s", excp.getMessage());
+        }
+    }
+
+    /** The number of ints of event buffer. */
+    private static final int CAPACITY = 1 << 16;
+
+    /** Marks a converted event, which is followed by the result. */
+    private static final int CONVERTED = -1;
+
+    /** KEYPRESS - N marks a keypress event, which is followed by N rotor
+     *  settings and then the character to be converted. */
+    private static final int KEYPRESS = -2;
+
+    /** Alphabet of the machine I trace. */
+    private final Alphabet _alphabet;
+
+    /** Destination of formatted events. */
+    private final Appendable _output;
+
+    /** Recorded events: character indices for mapped events, and marked
+     *  records for the others. */
+    private final int[] _events = new int[CAPACITY];
+
+    /** The number of ints of _events in use. */
+    private int _size;
+
+    /** Scratch space for formatting. */
+    private final StringBuilder _text = new StringBuilder();
+
+}
@@ -2,7 +2,11 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-/** Superclass that represents a rotor in the enigma machine.
+/** Superclass that represents a rotor in the enigma machine.  Its name,
+ *  permutation, and notches never change: a Machine keeps the settings
+ *  of its slots itself, so the same Rotor may serve any number of
+ *  Machines at once.  A PositionedRotor gives a Rotor a setting of its
+ *  own, for using it outside a Machine.
  *  @author Manu John
  */
 class Rotor {
@@ -11,8 +15,6 @@ class Rotor {
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
-        _pos = 0;
-        _ringSetting = 0;
     }
 
     /** Return my name. */
@@ -45,69 +47,18 @@ class Rotor {
         return false;
     }
 
-    /** Return my current setting. */
-    int setting() {
-        return _pos;
-    }
-
-    /** Set setting() to POSN.  */
-    void set(int posn) {
-        _pos = posn;
-    }
-
-    /** Set setting() to character CPOSN. */
-    void set(char cposn) {
-        int a = _permutation.alphabet().toInt(cposn);
-        _pos = a;
-    }
-
-    /** Set ringer with CPOSN. */
-    void setRinger(char cposn) {
-        int a = _permutation.alphabet().toInt(cposn);
-        _ringSetting = a;
-    }
-
-    /** Return the conversion of P (an integer in the range 0..size()-1)
-     *  according to my permutation. */
-    int convertForward(int p) {
-        int result = permutation().permute(permutation().wrap(p
-                + _pos - _ringSetting));
-        result = permutation().wrap(result - _pos + _ringSetting);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        return result;
-    }
-
-    /** Return the conversion of E (an integer in the range 0..size()-1)
-     *  according to the inverse of my permutation. */
-    int convertBackward(int e) {
-        int result = permutation().invert
-                (permutation().wrap(e + _pos - _ringSetting));
-        result = permutation().wrap
-                (result - _pos + _ringSetting);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        return result;
-    }
-
     /** Returns the positions of the notches, as a string giving the letters
      *  on the ring at which they occur. */
     String notches() {
         return "";
     }
 
-    /** Returns true iff I am positioned to allow the rotor to my left
-     *  to advance. */
-    boolean atNotch() {
+    /** Returns true iff I would be positioned to allow the rotor to my
+     *  left to advance were my setting POSN. */
+    boolean atNotch(int posn) {
         return false;
     }
 
-    /** Advance me one position, if possible. By default, does nothing. */
-    void advance() {
-    }
-
     @Override
     public String toString() {
         return "Rotor " + _name;
@@ -117,12 +68,6 @@ class Rotor {
     private final String _name;
 
     /** The permutation implemented by this rotor in its 0 position. */
-    private Permutation _permutation;
-
-    /** pos of rotor. */
-    private int _pos;
-
-    /** pos of ring setting. */
-    private int _ringSetting;
+    private final Permutation _permutation;
 
 }
@@ -0,0 +1,99 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The conversions by the rotors of a Machine, without its plugboard, at
+ *  each of a run of consecutive keypresses, for a Bombe.  Each rotor is
+ *  applied through a table of its conversions at every offset, so that
+ *  each step through a rotor is a single lookup, and each conversion is
+ *  computed only when first asked for.  The rotors must make up a
+ *  conversion that is its own inverse, as a Bombe requires, so that
+ *  computing one conversion gives another.  All ring settings are 0.
+ *  @author Manu John
+ */
+class Scrambler {
+
+    /** A scrambler for LENGTH keypresses of a machine whose alphabet has
+     *  SIZE characters and that has NUMROTORS slots. */
+    Scrambler(int length, int size, int numRotors) {
+        _size = size;
+        _numRotors = numRotors;
+        _forward = new int[numRotors][];
+        _backward = new int[numRotors][];
+        _offsets = new int[length * numRotors];
+        _memo = new int[length * size];
+    }
+
+    /** Return the table of the conversions by ROTOR at every offset: the
+     *  conversion of C at offset S is at S * alphabet size + C.  If
+     *  INVERSE, the table is of the inverse conversions. */
+    static int[] table(Rotor rotor, boolean inverse) {
+        Permutation perm = rotor.permutation();
+        int n = perm.size();
+        int[] result = new int[n * n];
+        for (int s = 0; s < n; s += 1) {
+            for (int c = 0; c < n; c += 1) {
+                int e = inverse ? perm.invert(c + s) : perm.permute(c + s);
+                result[s * n + c] = perm.wrap(e - s);
+            }
+        }
+        return result;
+    }
+
+    /** Use the tables FORWARD and BACKWARD, as made by table, for the
+     *  rotor in slot K. */
+    void setRotor(int k, int[] forward, int[] backward) {
+        _forward[k] = forward;
+        _backward[k] = backward;
+    }
+
+    /** Record the settings of the rotors of M, which must be the rotors
+     *  given to setRotor, as those at keypress T. */
+    void record(int t, Machine m) {
+        for (int k = 0; k < _numRotors; k += 1) {
+            _offsets[t * _numRotors + k] = m.setting(k) * _size;
+        }
+    }
+
+    /** Forget all conversions computed so far.  This must be called
+     *  whenever the recorded settings change. */
+    void clear() {
+        Arrays.fill(_memo, -1);
+    }
+
+    /** Return the conversion of C at keypress T. */
+    int convert(int t, int c) {
+        int i = t * _size + c;
+        int result = _memo[i];
+        if (result < 0) {
+            int base = t * _numRotors;
+            result = c;
+            for (int k = _numRotors - 1; k >= 0; k -= 1) {
+                result = _forward[k][_offsets[base + k] + result];
+            }
+            for (int k = 1; k < _numRotors; k += 1) {
+                result = _backward[k][_offsets[base + k] + result];
+            }
+            _memo[i] = result;
+            _memo[t * _size + result] = c;
+        }
+        return result;
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Forward and backward tables of the rotor in each slot. */
+    private final int[][] _forward, _backward;
+
+    /** Setting of each slot at each keypress, times _size. */
+    private final int[] _offsets;
+
+    /** Conversion of each character at each keypress, or -1 if it has
+     *  not been computed. */
+    private final int[] _memo;
+
+}
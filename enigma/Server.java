@@ -0,0 +1,159 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.*;
+
+/** A server that converts messages for any number of concurrent clients,
+ *  each connected through a local socket.  A client sends what Main
+ *  would read from an input file: settings lines and message lines, which
+ *  it may send as fast as it likes.  It receives what Main would write,
+ *  followed by a line "Error: MESSAGE" if there is an error in its input,
+ *  which also ends its session.  Output is sent whenever the server has
+ *  converted all the complete lines it has received.  Each session runs
+ *  on its own thread with its own copy of one machine, so that sessions
+ *  share all rotor tables but none of their settings.  Settings lines
+ *  are cached across sessions.
+ *  @author Manu John
+ */
+class Server implements Closeable {
+
+    /** A server that serves clients connecting to SOCKET using copies of
+     *  MACHINE, which must not be used elsewhere while I am running.  All
+     *  sessions share CACHE, which must be for MACHINE's rotors. */
+    Server(Machine machine, SettingsCache cache, ServerSocketChannel socket) {
+        _machine = machine;
+        _cache = cache;
+        _socket = socket;
+    }
+
+    /** Return a socket listening at ADDRESS, which is either a port
+     *  number on the loopback interface (0 for any free port) or the
+     *  name of a UNIX-domain socket to create. */
+    static ServerSocketChannel listen(String address) {
+        try {
+            if (!address.isEmpty() && address.chars().allMatch(
+                    c -> c >= '0' && c <= '9')) {
+                return ServerSocketChannel.open().bind(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                          Integer.parseInt(address)));
+            } else {
+                return ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                    .bind(UnixDomainSocketAddress.of(address));
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            throw error("could not listen on %s: %s", address,
+                        excp.getMessage());
+        }
+    }
+
+    /** Return the address on which I listen. */
+    SocketAddress address() {
+        try {
+            return _socket.getLocalAddress();
+        } catch (IOException excp) {
+            throw error("server is closed");
+        }
+    }
+
+    /** Serve clients until I am closed. */
+    void serve() {
+        ExecutorService sessions = sessionExecutor();
+        try {
+            while (true) {
+                SocketChannel client = _socket.accept();
+                sessions.execute(() -> session(client));
+            }
+        } catch (ClosedChannelException excp) {
+            return;
+        } catch (IOException excp) {
+            throw error("server failed: %s", excp.getMessage());
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    /** Stop accepting clients, and remove my socket file, if any.
+     *  Sessions in progress continue. */
+    @Override
+    public void close() {
+        SocketAddress address = null;
+        try {
+            address = _socket.getLocalAddress();
+            _socket.close();
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(
+                    ((UnixDomainSocketAddress) address).getPath());
+            }
+        } catch (IOException excp) {
+            throw error("could not close server: %s", excp.getMessage());
+        }
+    }
+
+    /** Convert the messages from CLIENT, sending the results back to it,
+     *  and then close it.  Any error ends only this session.  Errors in
+     *  the input are reported to CLIENT; for any other, CLIENT is told
+     *  only of an internal error, whose details go to the standard
+     *  error. */
+    private void session(SocketChannel client) {
+        PrintWriter output = Main.getOutput(client);
+        try {
+            LineReader input = new LineReader(client, Charset.defaultCharset());
+            if (input.next()) {
+                Main main = new Main(null, input, output);
+                main.setSettingsCache(_cache);
+                main.process(_machine.copy());
+            }
+        } catch (EnigmaException excp) {
+            output.printf("Error: %s%n", excp.getMessage());
+        } catch (RuntimeException excp) {
+            output.printf("Error: internal error%n");
+            System.err.printf("Error: internal error in session: %s%n",
+                              excp);
+        } finally {
+            output.close();
+        }
+    }
+
+    /** Return an executor that runs each task on a new virtual thread
+     *  where the platform has them (Java 21 and later), and otherwise on
+     *  a pooled platform thread. */
+    private static ExecutorService sessionExecutor() {
+        try {
+            Method virtual =
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Machine from which each session's machine is copied. */
+    private final Machine _machine;
+
+    /** Settings shared by all sessions. */
+    private final SettingsCache _cache;
+
+    /** Socket on which clients connect. */
+    private final ServerSocketChannel _socket;
+
+}
@@ -0,0 +1,132 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Server class.
+ *  @author
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Line separator. */
+    private static final String NL = System.lineSeparator();
+
+    /** Send INPUT to the server at ADDRESS and return its whole
+     *  response. */
+    private String request(SocketAddress address, String input)
+        throws IOException {
+        Charset charset = Charset.defaultCharset();
+        try (SocketChannel client = SocketChannel.open(address)) {
+            ByteBuffer request = charset.encode(input);
+            while (request.hasRemaining()) {
+                client.write(request);
+            }
+            client.shutdownOutput();
+            ByteBuffer response = ByteBuffer.allocate(1 << 16);
+            while (client.read(response) >= 0) {
+                if (!response.hasRemaining()) {
+                    ByteBuffer larger =
+                        ByteBuffer.allocate(2 * response.capacity());
+                    response = larger.put(response.flip());
+                }
+            }
+            return charset.decode(response.flip()).toString();
+        }
+    }
+
+    @Test
+    public void testSessions() throws Exception {
+        Server server = new Server(navalConfigMachine(), new SettingsCache(4),
+                                   Server.listen("0"));
+        SocketAddress address = server.address();
+        Thread serving = new Thread(server::serve);
+        serving.start();
+        try {
+            String settings1 = "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) "
+                + "(BY)\n";
+            String settings2 = settings1.replace("\n", "\r\n");
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(
+                () -> requestUnchecked(address,
+                                       settings1 + "FROM HIS SHOULDER\n\n"
+                                       + "HIAWATHA\n"));
+            CompletableFuture<String> second = CompletableFuture.supplyAsync(
+                () -> requestUnchecked(address,
+                                       settings2 + "QVPQSOKOILPUBKJZPISFXDW"
+                                       + "\n" + settings1
+                                       + "QVPQSOKOILPUBKJZPISFXDW"));
+            assertEquals("QVPQS OKOIL PUBKJ" + NL + NL + "ZPISF XDW" + NL,
+                         first.get());
+            assertEquals("FROMH ISSHO ULDER HIAWA THA" + NL
+                         + "FROMH ISSHO ULDER HIAWA THA" + NL,
+                         second.get());
+            assertEquals("Error: empty config file" + NL,
+                         request(address, "ABC\n"));
+            assertEquals("Error: character 9 is not in the alphabet" + NL,
+                         request(address, "* B Beta III IV I AXLE\nAB9\n"));
+        } finally {
+            server.close();
+            serving.join();
+        }
+    }
+
+    @Test
+    public void testUnexpectedError() throws Exception {
+        Machine naval = navalConfigMachine();
+        Machine broken =
+            new Machine(naval.alphabet(), 5, 3,
+                        new ArrayList<>(naval.availableRotors())) {
+                @Override
+                Machine copy() {
+                    throw new IllegalStateException("broken machine");
+                }
+            };
+        Server server = new Server(broken, new SettingsCache(4),
+                                   Server.listen("0"));
+        SocketAddress address = server.address();
+        Thread serving = new Thread(server::serve);
+        PrintStream err = System.err;
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(log, true));
+        serving.start();
+        try {
+            String request = "* B Beta III IV I AXLE\nHELLO\n";
+            String expected = "Error: internal error" + NL;
+            assertEquals(expected, request(address, request));
+            assertEquals(expected, request(address, request));
+        } finally {
+            server.close();
+            serving.join();
+            System.setErr(err);
+        }
+        assertTrue(log.toString().contains("broken machine"));
+    }
+
+    /** As for request(ADDRESS, INPUT), but with IOExceptions
+     *  unchecked. */
+    private String requestUnchecked(SocketAddress address, String input) {
+        try {
+            return request(address, input);
+        } catch (IOException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+}
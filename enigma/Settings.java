@@ -0,0 +1,79 @@
+package enigma;
+
+import java.util.Map;
+
+/** A snapshot of the settings of a Machine: the rotors in its slots,
+ *  their settings and ring settings, and its plugboard.  Settings never
+ *  change once made, so one Settings may be applied to any number of
+ *  Machines that share the same available rotors, as copies of one
+ *  Machine do.
+ *  @author Manu John
+ */
+final class Settings {
+
+    /** Settings for a Machine whose available rotors are AVAILABLE, with
+     *  the rotors SLOTS at settings POSITIONS and ring settings RINGS, and
+     *  the plugboard PLUGBOARD.  INNER is the combined mapping of the
+     *  slower rotors at those settings (see Machine).  The arrays become
+     *  mine. */
+    Settings(Map<String, Rotor> available, Rotor[] slots, int[] positions,
+             int[] rings, Permutation plugboard, int[] inner) {
+        _available = available;
+        _slots = slots;
+        _positions = positions;
+        _rings = rings;
+        _plugboard = plugboard;
+        _inner = inner;
+    }
+
+    /** Return the available rotors of the Machine I came from. */
+    Map<String, Rotor> available() {
+        return _available;
+    }
+
+    /** Return the rotors in each slot, which must not be modified. */
+    Rotor[] slots() {
+        return _slots;
+    }
+
+    /** Return the setting of each slot, which must not be modified. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** Return the ring setting of each slot, which must not be
+     *  modified. */
+    int[] rings() {
+        return _rings;
+    }
+
+    /** Return the plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** Return the combined mapping of the slower rotors, which must not
+     *  be modified. */
+    int[] inner() {
+        return _inner;
+    }
+
+    /** The available rotors of the Machine I came from. */
+    private final Map<String, Rotor> _available;
+
+    /** The rotor in each slot. */
+    private final Rotor[] _slots;
+
+    /** The setting of each slot. */
+    private final int[] _positions;
+
+    /** The ring setting of each slot. */
+    private final int[] _rings;
+
+    /** The plugboard. */
+    private final Permutation _plugboard;
+
+    /** The combined mapping of the slower rotors. */
+    private final int[] _inner;
+
+}
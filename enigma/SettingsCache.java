@@ -0,0 +1,100 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded cache of Settings, keyed by settings lines, that discards
+ *  the least recently used entry when full.  Lines should have their
+ *  whitespace normalized, as LineReader does, so that equivalent lines
+ *  are equal.  All Settings in one cache must be for Machines that share
+ *  the same rotors.  A cache may be shared between threads.
+ *  @author Manu John
+ */
+class SettingsCache {
+
+    /** A cache holding at most CAPACITY entries (none if 0). */
+    SettingsCache(int capacity) {
+        if (capacity < 0) {
+            throw new EnigmaException("negative settings cache size");
+        }
+        _capacity = capacity;
+        _entries = new LinkedHashMap<>(16, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Settings> eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /** Return the Settings cached for LINE, or null if there are none,
+     *  counting a hit or a miss. */
+    synchronized Settings get(String line) {
+        Settings result = _entries.get(line);
+        if (result == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return result;
+    }
+
+    /** Cache SETTINGS for LINE. */
+    synchronized void put(String line, Settings settings) {
+        _entries.put(line, settings);
+    }
+
+    /** Return LINE with its whitespace normalized as LineReader does:
+     *  no leading or trailing whitespace, and every other run of it
+     *  replaced by a single blank. */
+    static String normalize(String line) {
+        StringBuilder result = new StringBuilder(line.length());
+        boolean blank = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char ch = line.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                blank = result.length() > 0;
+            } else {
+                if (blank) {
+                    result.append(' ');
+                    blank = false;
+                }
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return the number of calls to get that found Settings. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of calls to get that found none. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of entries I hold. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the largest number of entries I may hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Load factor of _entries. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Maximum size of _entries. */
+    private final int _capacity;
+
+    /** Cached Settings, from least to most recently used. */
+    private final LinkedHashMap<String, Settings> _entries;
+
+    /** Counts of hits and misses. */
+    private long _hits, _misses;
+
+}
@@ -0,0 +1,80 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Settings and SettingsCache
+ *  classes.
+ *  @author
+ */
+public class SettingsCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testSettings() {
+        Machine mach = navalConfigMachine();
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setRotors("AXLE");
+        mach.setRing("BCDE");
+        mach.setPlugboard(new Permutation("(HQ) (EX)", mach.alphabet()));
+        Settings settings = mach.settings();
+        String expected = mach.convert("FROMHISSHOULDERHIAWATHA");
+
+        Machine other = navalConfigMachine();
+        try {
+            other.setSettings(settings);
+            fail("settings applied to a machine with other rotors");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        Machine copy = mach.copy();
+        copy.insertRotors(new String[] { "B", "Beta", "I", "III", "IV" });
+        copy.setSettings(settings);
+        assertEquals(expected, copy.convert("FROMHISSHOULDERHIAWATHA"));
+        mach.setSettings(settings);
+        assertEquals(expected, mach.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals(2, settings.rings()[2]);
+    }
+
+    @Test
+    public void testCache() {
+        Machine mach = navalConfigMachine();
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setPlugboard(new Permutation("", mach.alphabet()));
+        Settings s1 = mach.settings();
+        Settings s2 = mach.settings();
+        Settings s3 = mach.settings();
+        SettingsCache cache = new SettingsCache(2);
+        assertNull(cache.get("a"));
+        cache.put("a", s1);
+        cache.put("b", s2);
+        assertSame(s1, cache.get("a"));
+        cache.put("c", s3);
+        assertNull(cache.get("b"));
+        assertSame(s1, cache.get("a"));
+        assertSame(s3, cache.get("c"));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.hits());
+        assertEquals(2, cache.misses());
+
+        SettingsCache none = new SettingsCache(0);
+        none.put("a", s1);
+        assertNull(none.get("a"));
+        assertEquals(0, none.size());
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("* B Beta I (AB)",
+                     SettingsCache.normalize("\t*  B Beta\tI \n(AB) "));
+        assertEquals("", SettingsCache.normalize("  "));
+    }
+
+}
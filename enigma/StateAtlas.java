@@ -0,0 +1,349 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** The whole substitution of a machine with fixed rotors, ring settings,
+ *  and plugboard, for every setting of its moving rotors.  Only the
+ *  moving rotors' settings change as a message is converted, so each of
+ *  their combinations is a state, numbered by reading the settings from
+ *  the leftmost moving rotor to the fast rotor as the digits of a number
+ *  in base alphabet size.  For each state I hold the conversion of every
+ *  character, plugboard included, and the state after the next
+ *  keypress, so that converting a character is two table reads.
+ *
+ *  <p>My tables are kept outside the Java heap, in a direct buffer, or
+ *  in a read-only mapping of a file written by write(), which every
+ *  process that maps it shares.  The file holds, in order: MAGIC and
+ *  VERSION; the alphabet; the numbers of rotor slots and pawls; for each
+ *  slot, its rotor's name, setting, ring setting, forward permutation
+ *  table (chars), and notches (a byte per setting); the plugboard table
+ *  (chars); the number of states and the width of a table entry (1 or 2
+ *  bytes); the next state of each state (ints); and the conversions of
+ *  each state.  Strings and byte order are as for MachineImage.
+ *  @author Manu John
+ */
+final class StateAtlas {
+
+    /** First four bytes of every atlas: "ENAT" in ASCII. */
+    static final int MAGIC = 0x454e4154;
+
+    /** Version of the atlas format. */
+    static final int VERSION = 1;
+
+    /** Largest number of bytes an atlas may occupy. */
+    static final long MAX_SIZE = 1L << 30;
+
+    /** An atlas whose contents are DATA, from its start to its limit. */
+    private StateAtlas(ByteBuffer data) {
+        _data = data;
+        ByteBuffer in = data.duplicate();
+        in.position(0);
+        try {
+            if (in.getInt() != MAGIC) {
+                throw error("not a state atlas");
+            }
+            if (in.getInt() != VERSION) {
+                throw error("unsupported state atlas version");
+            }
+            _alphabet = Alphabet.of(getString(in));
+            _size = _alphabet.size();
+            _numRotors = in.getInt();
+            _firstMoving = _numRotors - in.getInt();
+            if (_numRotors < 0 || _numRotors > in.remaining()
+                || _firstMoving < 0 || _firstMoving > _numRotors) {
+                throw error("corrupt state atlas");
+            }
+            _names = new String[_numRotors];
+            _settings = new int[_numRotors];
+            _rings = new int[_numRotors];
+            _wiring = new int[_numRotors][];
+            _notches = new byte[_numRotors][_size];
+            for (int k = 0; k < _numRotors; k += 1) {
+                _names[k] = getString(in);
+                _settings[k] = in.getInt();
+                _rings[k] = in.getInt();
+                _wiring[k] = getTable(in);
+                in.get(_notches[k]);
+            }
+            _plugboard = getTable(in);
+            _numStates = in.getInt();
+            _wide = in.getInt() == 2;
+            _next = in.position();
+            _table = _next + _numStates * Integer.BYTES;
+            if (_numStates <= 0
+                || (long) _numStates * (Integer.BYTES
+                                        + _size * (_wide ? 2 : 1))
+                   != in.remaining()) {
+                throw error("corrupt state atlas");
+            }
+            for (int s = 0; s < _numStates; s += 1) {
+                int t = _data.getInt(_next + s * Integer.BYTES);
+                if (t < 0 || t >= _numStates) {
+                    throw error("corrupt state atlas");
+                }
+            }
+        } catch (BufferUnderflowException excp) {
+            throw error("truncated state atlas");
+        }
+    }
+
+    /** Return an atlas of MACHINE, which must have its rotors inserted
+     *  and its plugboard set, as it is now, except for the settings of
+     *  its moving rotors.  The atlas is held in a direct buffer. */
+    static StateAtlas build(Machine machine) {
+        if (!machine.getCond()) {
+            throw error("no rotors inserted");
+        }
+        Machine m = machine.copy();
+        Alphabet alpha = m.alphabet();
+        int n = alpha.size();
+        if (n > Character.MAX_VALUE + 1) {
+            throw error("alphabet is too large for a state atlas");
+        }
+        int numRotors = m.numRotors();
+        int first = numRotors - m.numPawls();
+        int width = n <= BYTE_ENTRIES ? 1 : 2;
+
+        long size = 7 * Integer.BYTES + 2 * n * Character.BYTES;
+        for (int k = 0; k < numRotors; k += 1) {
+            size += 3 * Integer.BYTES
+                + m.getRotor(k).name().length() * Character.BYTES
+                + n * Character.BYTES + n;
+        }
+        long states = 1;
+        for (int k = first; k < numRotors && states <= MAX_SIZE; k += 1) {
+            states *= n;
+        }
+        size += states * (Integer.BYTES + n * width);
+        if (size > MAX_SIZE) {
+            throw error("state atlas would need more than %d bytes",
+                        MAX_SIZE);
+        }
+
+        ByteBuffer out = ByteBuffer.allocateDirect((int) size);
+        out.putInt(MAGIC).putInt(VERSION);
+        putString(out, alpha.getSeq());
+        out.putInt(numRotors).putInt(m.numPawls());
+        for (int k = 0; k < numRotors; k += 1) {
+            Rotor r = m.getRotor(k);
+            putString(out, r.name());
+            out.putInt(m.setting(k)).putInt(m.ringSetting(k));
+            for (int c = 0; c < n; c += 1) {
+                out.putChar((char) r.permutation().permute(c));
+            }
+            for (int c = 0; c < n; c += 1) {
+                out.put(r.atNotch(c) ? (byte) 1 : (byte) 0);
+            }
+        }
+        for (int c = 0; c < n; c += 1) {
+            out.putChar((char) m.plugboard().permute(c));
+        }
+        out.putInt((int) states).putInt(width);
+
+        int next = out.position();
+        int table = next + (int) states * Integer.BYTES;
+        int[] setting = new int[numRotors - 1];
+        for (int k = 1; k < numRotors; k += 1) {
+            setting[k - 1] = m.setting(k);
+        }
+        for (int s = 0; s < states; s += 1) {
+            for (int k = numRotors - 1, t = s; k >= first; k -= 1) {
+                setting[k - 1] = t % n;
+                t /= n;
+            }
+            m.setRotors(setting);
+            for (int c = 0; c < n; c += 1) {
+                int i = s * n + c;
+                if (width == 1) {
+                    out.put(table + i, (byte) m.substitute(c));
+                } else {
+                    out.putChar(table + 2 * i, (char) m.substitute(c));
+                }
+            }
+            m.step();
+            out.putInt(next + s * Integer.BYTES, state(m, first));
+        }
+        return new StateAtlas(out.clear());
+    }
+
+    /** Return the atlas in the file named NAME, written by write(),
+     *  through a read-only mapping of it. */
+    static StateAtlas map(String name) {
+        try (FileChannel in = FileChannel.open(Paths.get(name),
+                                               StandardOpenOption.READ)) {
+            if (in.size() > MAX_SIZE) {
+                throw error("%s is too large for a state atlas", name);
+            }
+            return new StateAtlas(in.map(FileChannel.MapMode.READ_ONLY, 0,
+                                         in.size()));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Write me to the file named NAME, which is replaced. */
+    void write(String name) {
+        ByteBuffer bytes = _data.duplicate();
+        bytes.clear();
+        try (FileChannel out = FileChannel.open(Paths.get(name),
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.
+                                                TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return true iff I am an atlas of M as it is now: the same
+     *  alphabet, slots, pawls, rotors, ring settings, settings of
+     *  non-moving rotors, and plugboard. */
+    boolean matches(Machine m) {
+        if (!m.getCond() || m.numRotors() != _numRotors
+            || m.numRotors() - m.numPawls() != _firstMoving
+            || !m.alphabet().getSeq().equals(_alphabet.getSeq())) {
+            return false;
+        }
+        for (int k = 0; k < _numRotors; k += 1) {
+            Rotor r = m.getRotor(k);
+            if (!r.name().equals(_names[k])
+                || m.ringSetting(k) != _rings[k]
+                || k < _firstMoving && m.setting(k) != _settings[k]) {
+                return false;
+            }
+            for (int c = 0; c < _size; c += 1) {
+                if (r.permutation().permute(c) != _wiring[k][c]
+                    || r.atNotch(c) != (_notches[k][c] != 0)) {
+                    return false;
+                }
+            }
+        }
+        for (int c = 0; c < _size; c += 1) {
+            if (m.plugboard().permute(c) != _plugboard[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of my states. */
+    int numStates() {
+        return _numStates;
+    }
+
+    /** Return my state for the current settings of the moving rotors of
+     *  M, which I must match. */
+    int state(Machine m) {
+        return state(m, _firstMoving);
+    }
+
+    /** Return the state after one keypress from STATE. */
+    int next(int state) {
+        return _data.getInt(_next + state * Integer.BYTES);
+    }
+
+    /** Return the conversion of C in STATE. */
+    int substitute(int state, int c) {
+        int i = state * _size + c;
+        return _wide ? _data.getChar(_table + 2 * i)
+            : _data.get(_table + i) & BYTE_MASK;
+    }
+
+    /** Return the number of the state of M, whose first moving rotor is
+     *  in slot FIRST. */
+    private static int state(Machine m, int first) {
+        int n = m.alphabet().size();
+        int s = 0;
+        for (int k = first; k < m.numRotors(); k += 1) {
+            s = s * n + m.setting(k);
+        }
+        return s;
+    }
+
+    /** Write S to OUT as its length followed by its characters. */
+    private static void putString(ByteBuffer out, String s) {
+        out.putInt(s.length());
+        for (int i = 0; i < s.length(); i += 1) {
+            out.putChar(s.charAt(i));
+        }
+    }
+
+    /** Return the string written by putString that is next in IN. */
+    private static String getString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0 || len > in.remaining() / Character.BYTES) {
+            throw error("corrupt state atlas");
+        }
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i += 1) {
+            chars[i] = in.getChar();
+        }
+        return new String(chars);
+    }
+
+    /** Return the table of _size chars that is next in IN, as ints. */
+    private int[] getTable(ByteBuffer in) {
+        int[] result = new int[_size];
+        for (int k = 0; k < _size; k += 1) {
+            result[k] = in.getChar();
+        }
+        return result;
+    }
+
+    /** Largest alphabet size whose entries fit in a byte. */
+    private static final int BYTE_ENTRIES = 256;
+
+    /** Mask selecting the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** My contents. */
+    private final ByteBuffer _data;
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet, number of slots, and first moving slot. */
+    private final int _size, _numRotors, _firstMoving;
+
+    /** The names of the rotors in my slots. */
+    private final String[] _names;
+
+    /** The settings and ring settings of my slots. */
+    private final int[] _settings, _rings;
+
+    /** The forward permutation table of the rotor in each slot. */
+    private final int[][] _wiring;
+
+    /** Whether the rotor in slot K is at a notch at setting C, as
+     *  _notches[K][C] != 0. */
+    private final byte[][] _notches;
+
+    /** My plugboard's permutation table. */
+    private final int[] _plugboard;
+
+    /** Number of my states. */
+    private final int _numStates;
+
+    /** True iff my table entries are chars rather than bytes. */
+    private final boolean _wide;
+
+    /** Positions in _data of the next-state table and of the conversion
+     *  table. */
+    private final int _next, _table;
+
+}
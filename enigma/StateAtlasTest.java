@@ -0,0 +1,144 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the StateAtlas class.
+ *  @author Manu John
+ */
+public class StateAtlasTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** First character of the alphabet of testWideEntries. */
+    private static final char FIRST_WIDE = '\u0100';
+
+    /** Return the conversion of MSG by ATLAS, starting from STATE. */
+    private String convert(StateAtlas atlas, int state, String msg) {
+        StringBuilder result = new StringBuilder();
+        Alphabet alpha = atlas.alphabet();
+        for (int i = 0; i < msg.length(); i += 1) {
+            state = atlas.next(state);
+            result.append(alpha.toChar(
+                atlas.substitute(state, alpha.toInt(msg.charAt(i)))));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testMatchesMachine() {
+        Random random = new Random(7);
+        String msg = randomLetters(random, 20000, false);
+        for (String settings
+                 : new String[] {
+                     "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+                     "* B Beta VI II V AZMY CDQF (AZ) (MN)",
+                     "* B Beta I VI III AAMZ" }) {
+            Machine m = navalConfigMachine(settings);
+            StateAtlas atlas = StateAtlas.build(m);
+            assertEquals(26 * 26 * 26, atlas.numStates());
+            assertTrue(atlas.matches(m));
+            int state = atlas.state(m);
+            assertEquals(settings, m.convert(msg),
+                         convert(atlas, state, msg));
+        }
+    }
+
+    @Test
+    public void testMatches() {
+        String settings = "* B Beta III IV I AXLE BCDE (HQ) (EX)";
+        StateAtlas atlas = StateAtlas.build(navalConfigMachine(settings));
+        assertTrue(atlas.matches(
+            navalConfigMachine("* B Beta III IV I AQRS BCDE (HQ) (EX)")));
+        assertFalse(atlas.matches(
+            navalConfigMachine("* B Beta III IV I BXLE BCDE (HQ) (EX)")));
+        assertFalse(atlas.matches(
+            navalConfigMachine("* B Beta III IV I AXLE BCDF (HQ) (EX)")));
+        assertFalse(atlas.matches(
+            navalConfigMachine("* B Beta III IV I AXLE BCDE (HQ) (EY)")));
+        assertFalse(atlas.matches(
+            navalConfigMachine("* B Beta III IV II AXLE BCDE (HQ) (EX)")));
+    }
+
+    @Test
+    public void testWriteAndMap() throws IOException {
+        Machine m = navalConfigMachine("* B Beta VI II V AZMY CDQF (AZ) (MN)");
+        File file = File.createTempFile("atlas", ".bin");
+        file.deleteOnExit();
+        StateAtlas.build(m).write(file.getPath());
+        StateAtlas mapped = StateAtlas.map(file.getPath());
+        assertTrue(mapped.matches(m));
+        String msg = randomLetters(new Random(3), 2000, false);
+        int state = mapped.state(m);
+        assertEquals(m.convert(msg), convert(mapped, state, msg));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        try {
+            StateAtlas.map(file.getPath());
+            fail("mapped a truncated atlas");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testWideEntries() {
+        int n = 300;
+        StringBuilder chars = new StringBuilder();
+        for (int k = 0; k < n; k += 1) {
+            chars.append((char) (FIRST_WIDE + k));
+        }
+        Alphabet alpha = new Alphabet(chars.toString());
+        int[] reflect = new int[n];
+        int[] shift = new int[n];
+        int[] unshift = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            reflect[k] = k ^ 1;
+            shift[k] = (k + 7) % n;
+            unshift[k] = (k + n - 7) % n;
+        }
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(alpha, reflect,
+                                                      reflect)));
+        rotors.add(new MovingRotor("M", new Permutation(alpha, shift,
+                                                        unshift),
+                                   chars.substring(0, 1)));
+        Machine m = new Machine(alpha, 2, 1, rotors);
+        m.insertRotors(new String[] { "R", "M" });
+        m.setRotors(chars.substring(5, 6));
+        m.setPlugboard(new Permutation("", alpha));
+        StateAtlas atlas = StateAtlas.build(m);
+        assertEquals(n, atlas.numStates());
+        StringBuilder msg = new StringBuilder();
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i += 1) {
+            msg.append(chars.charAt(random.nextInt(n)));
+        }
+        int state = atlas.state(m);
+        assertEquals(m.convert(msg.toString()),
+                     convert(atlas, state, msg.toString()));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTooLarge() {
+        Machine m = new ConfigParser(
+            NAVAL_CONFIG.replaceFirst(" 5 3", " 7 6")).parse();
+        Main.configure(m, "* B I II III IV V VI AAAAAA");
+        StateAtlas.build(m);
+    }
+
+}
@@ -1,6 +1,11 @@
 package enigma;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
 
 /** Utility definitions for use in unit tests.
  *  @author P. N. Hilfinger
@@ -126,4 +131,215 @@ class TestUtils {
         NAVALZ_MAP.put("Gamma", "EGTPLBOVFSINCUJZDXMRQAYWHK");
     }
 
+    /** A configuration of the upper-case alphabet with five slots and
+     *  three pawls, and the naval rotors of NAVALA: moving rotors I to
+     *  VI with their usual notches, fixed rotors Beta and Gamma, and
+     *  reflectors B and C. */
+    static final String NAVAL_CONFIG =
+        UPPER_STRING + " 5 3\n"
+        + "I MQ " + NAVALA.get("I") + "\n"
+        + "II ME " + NAVALA.get("II") + "\n"
+        + "III MV " + NAVALA.get("III") + "\n"
+        + "IV MJ " + NAVALA.get("IV") + "\n"
+        + "V MZ " + NAVALA.get("V") + "\n"
+        + "VI MZM " + NAVALA.get("VI") + "\n"
+        + "Beta N " + NAVALA.get("Beta") + "\n"
+        + "Gamma N " + NAVALA.get("Gamma") + "\n"
+        + "B R " + NAVALA.get("B") + "\n"
+        + "C R " + NAVALA.get("C") + "\n";
+
+    /** The moving rotors of NAVAL_CONFIG. */
+    private static final String[] NAVAL_MOVING = {
+        "I", "II", "III", "IV", "V", "VI"
+    };
+
+    /** Return a new machine configured by NAVAL_CONFIG. */
+    static Machine navalConfigMachine() {
+        return new ConfigParser(NAVAL_CONFIG).parse();
+    }
+
+    /** Return a new machine configured by NAVAL_CONFIG and set up by the
+     *  settings line SETTINGS. */
+    static Machine navalConfigMachine(String settings) {
+        Machine result = navalConfigMachine();
+        Main.configure(result, settings);
+        return result;
+    }
+
+    /** Return a settings line for NAVAL_CONFIG chosen by RANDOM: a random
+     *  reflector, fixed rotor, and three distinct moving rotors, random
+     *  settings, ring settings half the time, and up to ten plugboard
+     *  pairs. */
+    static String randomNavalSettings(Random random) {
+        List<String> moving = new ArrayList<>(Arrays.asList(NAVAL_MOVING));
+        Collections.shuffle(moving, random);
+        StringBuilder line = new StringBuilder("*");
+        line.append(random.nextBoolean() ? " B" : " C");
+        line.append(random.nextBoolean() ? " Beta" : " Gamma");
+        for (int k = 0; k < 3; k += 1) {
+            line.append(' ').append(moving.get(k));
+        }
+        line.append(' ').append(randomLetters(random, 4, false));
+        if (random.nextBoolean()) {
+            line.append(' ').append(randomLetters(random, 4, false));
+        }
+        List<Character> letters = new ArrayList<>();
+        for (char c = 'A'; c <= 'Z'; c += 1) {
+            letters.add(c);
+        }
+        Collections.shuffle(letters, random);
+        for (int k = 0; k < 2 * random.nextInt(11); k += 2) {
+            line.append(" (").append(letters.get(k))
+                .append(letters.get(k + 1)).append(')');
+        }
+        return line.toString();
+    }
+
+    /** Return N upper-case letters chosen by RANDOM, each followed by a
+     *  blank one time in eight if SPACES. */
+    static String randomLetters(Random random, int n, boolean spaces) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            result.append((char) ('A' + random.nextInt(26)));
+            if (spaces && random.nextInt(8) == 0) {
+                result.append(' ');
+            }
+        }
+        return result.toString();
+    }
+
+    /** A plugboard for the cryptanalysis tests. */
+    static final String NAVAL_PLUGBOARD = "(AT) (BL) (HK) (MZ) (OW)";
+
+    /** Return a machine of UPPER with NUMROTORS slots and NUMROTORS - 1
+     *  pawls, whose available rotors are naval reflector B and naval
+     *  rotors I, III, and IV, with their usual notches. */
+    static Machine navalMachine(int numRotors) {
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        UPPER), "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(NAVALA.get("III"),
+                                                          UPPER), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(NAVALA.get("IV"),
+                                                         UPPER), "J"));
+        return new Machine(UPPER, numRotors, numRotors - 1, rotors);
+    }
+
+    /** Return the indices in UPPER of the letters of TEXT, taken in upper
+     *  case, skipping everything else. */
+    static int[] letters(String text) {
+        int[] result = new int[text.length()];
+        int n = 0;
+        for (char c : text.toUpperCase().toCharArray()) {
+            if (UPPER.contains(c)) {
+                result[n] = UPPER.toInt(c);
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Return the conversions by M of the indices TEXT, which leave M as
+     *  converting them one at a time would. */
+    static int[] encrypt(Machine m, int[] text) {
+        int[] result = new int[text.length];
+        for (int i = 0; i < text.length; i += 1) {
+            result[i] = m.convert(text[i]);
+        }
+        return result;
+    }
+
+    /** A configuration of a machine of the 256 byte values, with four
+     *  slots and two pawls, a reflector R, a fixed rotor N, and moving
+     *  rotors M1 and M2 whose wirings are random but fixed. */
+    static final String BYTE_CONFIG;
+    static {
+        Random random = new Random(256);
+        StringBuilder reflector = new StringBuilder();
+        int[] order = shuffledBytes(random);
+        for (int k = 0; k < order.length; k += 2) {
+            reflector.append(String.format("(%02x%02x)", order[k],
+                                           order[k + 1]));
+        }
+        BYTE_CONFIG = "(BYTES) 4 2\n"
+            + " R R " + reflector + "\n"
+            + " N N " + hexCycle(shuffledBytes(random)) + "\n"
+            + " M1 M00 " + hexCycle(shuffledBytes(random)) + "\n"
+            + " M2 M7f80 " + hexCycle(shuffledBytes(random)) + "\n";
+    }
+
+    /** Return the 256 byte values in an order chosen by RANDOM. */
+    static int[] shuffledBytes(Random random) {
+        return shuffled(random, 256);
+    }
+
+    /** Return 0 .. N-1 in an order chosen by RANDOM. */
+    static int[] shuffled(Random random, int n) {
+        int[] result = new int[n];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = k;
+        }
+        for (int k = result.length - 1; k > 0; k -= 1) {
+            int j = random.nextInt(k + 1);
+            int t = result[k];
+            result[k] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+    /** Number of characters of LARGE_ALPHABET in the Basic Multilingual
+     *  Plane, and outside it. */
+    static final int LARGE_BMP = 20000, LARGE_SUPPLEMENTARY = 20000;
+
+    /** An alphabet of LARGE_BMP ideographs from U+4E00 followed by
+     *  LARGE_SUPPLEMENTARY ideographs from U+20000. */
+    static final String LARGE_ALPHABET = largeAlphabet();
+
+    /** Return LARGE_ALPHABET. */
+    private static String largeAlphabet() {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < LARGE_BMP; k += 1) {
+            result.appendCodePoint(0x4e00 + k);
+        }
+        for (int k = 0; k < LARGE_SUPPLEMENTARY; k += 1) {
+            result.appendCodePoint(0x20000 + k);
+        }
+        return result.toString();
+    }
+
+    /** Return a configuration with alphabet LARGE_ALPHABET, 3 slots and
+     *  1 pawl, and rotors R (reflector), N (fixed), and M (moving, with a
+     *  notch at its first character), wired at random by RANDOM. */
+    static String largeConfig(Random random) {
+        int[] alpha = LARGE_ALPHABET.codePoints().toArray();
+        StringBuilder result = new StringBuilder(LARGE_ALPHABET);
+        result.append(" 3 1\n R R ");
+        int[] order = shuffled(random, alpha.length);
+        for (int k = 0; k < order.length; k += 2) {
+            result.append('(').appendCodePoint(alpha[order[k]])
+                .appendCodePoint(alpha[order[k + 1]]).append(')');
+        }
+        result.append("\n N N (");
+        for (int k : shuffled(random, alpha.length)) {
+            result.appendCodePoint(alpha[k]);
+        }
+        result.append(")\n M M").appendCodePoint(alpha[0]).append(" (");
+        for (int k : shuffled(random, alpha.length)) {
+            result.appendCodePoint(alpha[k]);
+        }
+        return result.append(")\n").toString();
+    }
+
+    /** Return the cycle through the bytes ORDER, in hexadecimal. */
+    static String hexCycle(int[] order) {
+        StringBuilder result = new StringBuilder("(");
+        for (int b : order) {
+            result.append(String.format("%02x", b));
+        }
+        return result.append(')').toString();
+    }
+
 }
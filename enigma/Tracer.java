@@ -0,0 +1,38 @@
+package enigma;
+
+/** Receives a record of each character a Machine converts, for
+ *  debugging.  For each character, the Machine calls keypress once,
+ *  then mapped once for each stage the character passes through but
+ *  the last (plugboard, each rotor forwards, each rotor backwards),
+ *  then converted with the result.
+ *  @author Manu John
+ */
+interface Tracer {
+
+    /** A Tracer that ignores everything.  A Machine using it does not
+     *  report anything, so converting costs nothing extra. */
+    Tracer NONE = new Tracer() {
+        @Override
+        public void keypress(Machine machine, int c) {
+        }
+
+        @Override
+        public void mapped(int c) {
+        }
+
+        @Override
+        public void converted(int c) {
+        }
+    };
+
+    /** Note that MACHINE, its rotors having just advanced, is about to
+     *  convert C (an index into its alphabet). */
+    void keypress(Machine machine, int c);
+
+    /** Note that the character being converted has become C. */
+    void mapped(int c);
+
+    /** Note that the character being converted came out as C. */
+    void converted(int c);
+
+}
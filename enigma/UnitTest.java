@@ -16,7 +16,19 @@ public class UnitTest {
         }
         System.exit(textui.runClasses(PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                AlphabetTest.class,
+                LineReaderTest.class,
+                GroupWriterTest.class,
+                ConfigParserTest.class,
+                MachineImageTest.class,
+                ServerTest.class,
+                SettingsCacheTest.class,
+                KeySearchTest.class,
+                BombeTest.class,
+                PlugboardSolverTest.class,
+                BatchEngineTest.class,
+                StateAtlasTest.class));
     }
 
 }